@@ -22,4 +22,9 @@ public class AddObjectCommand implements Command {
     public void undo() {
         targetSlide.removeObject(objectToAdd);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Slide getTargetSlide() {
+        return targetSlide;
+    }
+}
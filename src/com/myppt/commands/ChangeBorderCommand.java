@@ -1,6 +1,7 @@
 package com.myppt.commands;
 
 import java.awt.Color;
+import com.myppt.model.AbstractSlideObject;
 import com.myppt.model.EllipseShape;
 import com.myppt.model.LineShape;
 import com.myppt.model.RectangleShape;
@@ -109,4 +110,9 @@ public class ChangeBorderCommand implements Command {
             l.setBorderStyle(oldStyle);
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public AbstractSlideObject getTargetObject() {
+        return targetObject instanceof AbstractSlideObject ? (AbstractSlideObject) targetObject : null;
+    }
+}
@@ -35,4 +35,9 @@ public class ChangeColorCommand implements Command {
         else if (targetObject instanceof LineShape) ((LineShape) targetObject).setLineColor(color);
         else if (targetObject instanceof TextBox) ((TextBox) targetObject).setTextColor(color);
     }
-}
\ No newline at end of file
+
+    @Override
+    public AbstractSlideObject getTargetObject() {
+        return targetObject;
+    }
+}
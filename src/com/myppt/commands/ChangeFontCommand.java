@@ -23,4 +23,9 @@ public class ChangeFontCommand implements Command {
     public void undo() {
         targetTextBox.setFont(oldFont);
     }
-}
\ No newline at end of file
+
+    @Override
+    public TextBox getTargetObject() {
+        return targetTextBox;
+    }
+}
@@ -22,4 +22,9 @@ public class ChangeOpacityCommand implements Command {
     public void undo() {
         targetImage.setOpacity(oldOpacity);
     }
-}
\ No newline at end of file
+
+    @Override
+    public ImageObject getTargetObject() {
+        return targetImage;
+    }
+}
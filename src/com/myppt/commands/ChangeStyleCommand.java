@@ -23,4 +23,9 @@ public class ChangeStyleCommand implements Command {
     public void undo() {
         targetObject.setStyle(oldStyle);
     }
-}
\ No newline at end of file
+
+    @Override
+    public AbstractSlideObject getTargetObject() {
+        return targetObject;
+    }
+}
@@ -22,4 +22,9 @@ public class ChangeTextCommand implements Command {
     public void undo() {
         targetTextBox.setText(oldText);
     }
-}
\ No newline at end of file
+
+    @Override
+    public TextBox getTargetObject() {
+        return targetTextBox;
+    }
+}
@@ -29,4 +29,9 @@ public class ChangeZOrderCommand implements Command {
     public void undo() {
         targetSlide.setSlideObjects(beforeOrder);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Slide getTargetSlide() {
+        return targetSlide;
+    }
+}
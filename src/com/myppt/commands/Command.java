@@ -1,5 +1,8 @@
 package com.myppt.commands;
 
+import com.myppt.model.AbstractSlideObject;
+import com.myppt.model.Slide;
+
 /**
  * 命令接口，所有可撤销/重做的操作都必须实现此接口。
  */
@@ -13,4 +16,19 @@ public interface Command {
      * 撤销命令。
      */
     void undo();
-}
\ No newline at end of file
+
+    /**
+     * 返回该命令修改的页面（增删对象、调整图层顺序等），用于按页跟踪修改。
+     * 只修改单个对象属性的命令返回 null，由调用者根据 getTargetObject() 查找所在页面。
+     */
+    default Slide getTargetSlide() {
+        return null;
+    }
+
+    /**
+     * 返回该命令修改的对象；不针对单个对象的命令返回 null。
+     */
+    default AbstractSlideObject getTargetObject() {
+        return null;
+    }
+}
@@ -25,6 +25,11 @@ public class DeleteObjectCommand implements Command {
     @Override
     public void undo() {
         // 撤销删除，就是在原始位置把对象加回去
-        targetSlide.getSlideObjects().add(originalIndex, objectToDelete);
+        targetSlide.addObject(originalIndex, objectToDelete);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Slide getTargetSlide() {
+        return targetSlide;
+    }
+}
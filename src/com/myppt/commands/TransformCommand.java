@@ -23,4 +23,9 @@ public class TransformCommand implements Command {
     public void undo() {
         targetObject.setBounds(oldBounds);
     }
-}
\ No newline at end of file
+
+    @Override
+    public AbstractSlideObject getTargetObject() {
+        return targetObject;
+    }
+}
@@ -1,6 +1,11 @@
 package com.myppt.controller;
 
 import java.awt.Point;
+import java.awt.Window;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JViewport;
@@ -11,8 +16,12 @@ import com.myppt.controller.strategies.DrawObjectStrategy;
 import com.myppt.controller.strategies.InteractionStrategy;
 import com.myppt.controller.strategies.NullStrategy;
 import com.myppt.controller.strategies.SelectStrategy;
+import com.myppt.commands.Command;
 import com.myppt.model.AbstractSlideObject;
+import com.myppt.model.ImageBlob;
+import com.myppt.model.ImageBlobStore;
 import com.myppt.model.Presentation;
+import com.myppt.model.Slide;
 import com.myppt.model.Style;
 import com.myppt.view.MainFrame;
 
@@ -41,12 +50,16 @@ public class AppController {
     private AbstractSlideObject clipboardObject = null; // 用于复制粘贴
     private int pasteOffset = 0; // 粘贴偏移量
 
+    // 已经解码完成、等待在事件分发线程上统一重绘的图片
+    private final Set<ImageBlob> decodedBlobs = new LinkedHashSet<>();
+
     public AppController(Presentation presentation, MainFrame mainFrame) {
         this.presentation = presentation;
         this.mainFrame = mainFrame;
         this.mainFrame.setupCanvas(presentation);
         
         this.undoManager = new UndoManager();
+        this.undoManager.setCommandListener(this::onCommandApplied);
         this.currentStrategy = new SelectStrategy(this);
         
         // 初始化所有子处理器
@@ -61,6 +74,17 @@ public class AppController {
         // 统一设置监听器
         new ListenerSetup(this).attachAllListeners();
 
+        // 图片在后台解码完成后用图片替换占位框。一批解码完成只重绘一次：
+        // 编辑区只重绘用到这些图片的区域，其他窗口（放映窗口）整体重绘；缩略图在后台自己解码，不需要重绘
+        ImageBlobStore.getInstance().addDecodeListener(blob -> {
+            synchronized (decodedBlobs) {
+                if (!decodedBlobs.add(blob) || decodedBlobs.size() > 1) {
+                    return; // 已经安排过一次重绘
+                }
+            }
+            SwingUtilities.invokeLater(this::flushDecodedBlobs);
+        });
+
         // 初始化UI
         uiUpdater.updateUI();
         uiUpdater.updateTitle();
@@ -129,6 +153,38 @@ public class AppController {
         System.out.println("视图已适应窗口大小并居中，当前缩放比例: " + String.format("%.2f", scale));
     }
 
+    /**
+     * 命令执行、撤销或重做之后，把它修改的页面标记为已修改，增量保存时只写出这些页面。
+     * 命令只知道目标对象时，查找对象所在的页面；找不到时（对象所在页面已被删除）退回到当前页。
+     */
+    private void onCommandApplied(Command command) {
+        Slide slide = command.getTargetSlide();
+        if (slide == null && command.getTargetObject() != null) {
+            slide = presentation.findSlideOf(command.getTargetObject());
+        }
+        if (slide == null) {
+            slide = presentation.getCurrentSlide();
+        }
+        slide.touch();
+    }
+
+    // 事件分发线程：处理这一批解码完成的图片
+    private void flushDecodedBlobs() {
+        List<ImageBlob> blobs;
+        synchronized (decodedBlobs) {
+            blobs = new ArrayList<>(decodedBlobs);
+            decodedBlobs.clear();
+        }
+        for (ImageBlob blob : blobs) {
+            mainFrame.getCanvasPanel().imageDecoded(blob);
+        }
+        for (Window window : Window.getWindows()) {
+            if (window != mainFrame) {
+                window.repaint();
+            }
+        }
+    }
+
     // --- 坐标转换工具 ---
 
     public Point convertScreenToWorld(Point screenPoint) {
@@ -1,79 +1,239 @@
 package com.myppt.controller;
 
 import com.myppt.model.Presentation;
+import com.myppt.utils.EditJournal;
+import com.myppt.utils.PresentationFile;
 import java.io.*;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * 负责所有自动保存相关的功能。
+ * <p>
+ * 自动保存由模型版本号（UndoManager 在执行/撤销/重做命令时递增）驱动，采用“检查点 + 预写日志”：
+ * 1. 检查点：偶尔把整个演示文稿写成一个完整副本 checkpoint-N.myppt；
+ * 2. 日志：之后每次修改只把被修改的页面追加到 journal-N.log 并同步到磁盘，每次只有几 KB。
+ * 日志超过一定大小后开始新的一轮（N+1），写好新检查点后再删除上一轮的文件。
+ * 崩溃后从编号最大的完整检查点开始重放对应的日志，可以恢复到最后一次修改。
+ * 快照和日志内容都在事件分发线程上生成，写盘交给后台线程，后台线程不会直接读取模型。
  */
 public class AutosaveManager {
     private final AppController controller;
-    private Timer autosaveTimer;
-    
+    private Timer flushTimer;
+
     private static final String AUTOSAVE_DIR_NAME = ".autosave";
-    private static final String AUTOSAVE_FILE_NAME = AUTOSAVE_DIR_NAME + File.separator + "current.myppt.tmp";
-    private static final long AUTOSAVE_INTERVAL_MS = 2000; // 2 seconds
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String CHECKPOINT_SUFFIX = ".myppt";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final int FLUSH_DELAY_MS = 200;                  // 合并同一时刻的连续修改（例如拖动滑块）
+    private static final long CHECKPOINT_JOURNAL_BYTES = 4L << 20;  // 日志超过 4MB 时做新的检查点
+
+    // 所有对自动保存文件的写入和删除都在这个线程上依次执行
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "MyPPT-Autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // --- 事件分发线程 ---
+    private EditJournal journal = null; // 当前一轮的日志，null 表示下次修改时需要先做检查点
+    private int epoch = 0;
+    private long journaledVersion = 0;  // 已经写入日志的模型版本号
+
+    // --- 写盘线程 ---
+    private EditJournal openJournal = null;
 
     public AutosaveManager(AppController controller) {
         this.controller = controller;
     }
 
     public void start() {
-        autosaveTimer = new Timer(true); // Daemon thread
-        autosaveTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                performAutosave();
-            }
-        }, AUTOSAVE_INTERVAL_MS, AUTOSAVE_INTERVAL_MS);
-        System.out.println("自动保存开始计时，两秒一次。");
+        flushTimer = new Timer(FLUSH_DELAY_MS, e -> flushJournal());
+        flushTimer.setRepeats(false);
+        controller.getUndoManager().addChangeListener(() -> {
+            if (!flushTimer.isRunning()) flushTimer.start();
+        });
+        if (journaledVersion != controller.getUndoManager().getVersion()) {
+            flushTimer.start(); // 刚从备份恢复的内容还没有新的备份
+        }
+        System.out.println("自动保存已启动，每次修改写入编辑日志。");
     }
-    
-    private void performAutosave() {
-        File autosaveDir = new File(AUTOSAVE_DIR_NAME);
-        if (!autosaveDir.exists()) {
-            autosaveDir.mkdirs();
+
+    // 在事件分发线程上由计时器调用：把新的修改写入日志，必要时先做新的检查点
+    private void flushJournal() {
+        long version = controller.getUndoManager().getVersion();
+        if (version == journaledVersion) {
+            return; // 没有新的修改
         }
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(AUTOSAVE_FILE_NAME))) {
-            oos.writeObject(controller.getPresentation());
+
+        Presentation presentation = controller.getPresentation();
+        try {
+            if (journal == null || journal.getPresentation() != presentation || journal.size() > CHECKPOINT_JOURNAL_BYTES) {
+                beginEpoch(presentation);
+            } else {
+                byte[] entry = journal.capture();
+                if (entry != null) {
+                    EditJournal target = journal;
+                    writer.execute(() -> appendEntry(target, entry));
+                }
+            }
+            journaledVersion = version;
         } catch (IOException e) {
             System.err.println("自动保存失败：" + e.getMessage());
         }
     }
 
+    /**
+     * 开始新的一轮：先写好新日志的文件头，再写检查点，最后删除上一轮的文件。
+     * 任何一步失败，上一轮的检查点和日志都还在，恢复时仍然使用它们。
+     */
+    private void beginEpoch(Presentation presentation) throws IOException {
+        PresentationFile.Snapshot snapshot = PresentationFile.snapshot(presentation);
+        EditJournal next = EditJournal.begin(presentation, snapshot);
+        int nextEpoch = ++epoch;
+        journal = next;
+
+        writer.execute(() -> {
+            try {
+                File autosaveDir = new File(AUTOSAVE_DIR_NAME);
+                if (!autosaveDir.exists()) {
+                    autosaveDir.mkdirs();
+                }
+                if (openJournal != null) {
+                    openJournal.close();
+                }
+                openJournal = next;
+                next.open(journalFile(nextEpoch));
+                PresentationFile.writeCopy(snapshot, checkpointFile(nextEpoch));
+                deleteEpochsBefore(nextEpoch);
+                System.out.println("自动保存检查点 #" + nextEpoch + " 已写入");
+            } catch (IOException | RuntimeException e) {
+                System.err.println("自动保存检查点失败：" + e.getMessage());
+                SwingUtilities.invokeLater(() -> {
+                    if (journal == next) journal = null; // 下次修改时重新做检查点
+                });
+            }
+        });
+    }
+
+    // 写盘线程：追加一条日志
+    private void appendEntry(EditJournal target, byte[] entry) {
+        if (openJournal != target) return; // 这一轮已经结束（检查点失败、文档被替换）
+        try {
+            target.append(entry);
+        } catch (IOException e) {
+            System.err.println("写入编辑日志失败：" + e.getMessage());
+            SwingUtilities.invokeLater(() -> {
+                if (journal == target) journal = null;
+            });
+        }
+    }
+
+    /**
+     * 当前的演示文稿被整体替换（新建、打开）时调用：丢弃旧文档的自动保存文件，从当前版本重新开始计。
+     */
+    public void reset() {
+        journal = null;
+        journaledVersion = controller.getUndoManager().getVersion();
+        deleteFile();
+    }
+
     public void checkAndRestore() {
-        File autosaveFile = new File(AUTOSAVE_FILE_NAME);
-        if (autosaveFile.exists()) {
+        int latest = findLatestEpoch();
+        if (latest > 0) {
             int result = JOptionPane.showConfirmDialog(controller.getMainFrame(),
                 "检测到上次意外关闭，是否恢复未保存的工作？", "自动恢复",
                 JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
 
             if (result == JOptionPane.YES_OPTION) {
-                try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(autosaveFile))) {
-                    Presentation restored = (Presentation) ois.readObject();
+                try {
+                    // 检查点和日志随后会被删除，recover 返回时所有页面都已在内存中
+                    Presentation restored = EditJournal.recover(checkpointFile(latest), journalFile(latest));
                     controller.setPresentation(restored);
                     controller.getMainFrame().getCanvasPanel().setPresentation(restored);
                     controller.getFileHandler().setDirty(true);
+                    journaledVersion = -1; // 恢复的内容只在内存中，启动后立即重新备份
                     System.out.println("已从自动保存的备份文件夹回复原文件");
-                } catch (IOException | ClassNotFoundException e) {
+                } catch (IOException e) {
                     JOptionPane.showMessageDialog(controller.getMainFrame(), "自动恢复文件已损坏。", "错误", JOptionPane.ERROR_MESSAGE);
                 }
             }
             deleteFile();
         }
     }
-    
-    public void deleteFile() {
-        File autosaveFile = new File(AUTOSAVE_FILE_NAME);
-        if (autosaveFile.exists() && autosaveFile.delete()) {
-            System.out.println("已删除原自动保存备份文件");
-            File autosaveDir = new File(AUTOSAVE_DIR_NAME);
-            if (autosaveDir.exists() && autosaveDir.isDirectory() && autosaveDir.list().length == 0) {
-                autosaveDir.delete();
+
+    // 找到编号最大、检查点完整存在的一轮；没有时返回 0
+    private int findLatestEpoch() {
+        File[] files = new File(AUTOSAVE_DIR_NAME).listFiles();
+        int latest = 0;
+        if (files != null) {
+            for (File file : files) {
+                int n = parseEpoch(file.getName(), CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX);
+                latest = Math.max(latest, n);
+            }
+        }
+        return latest;
+    }
+
+    private static int parseEpoch(String name, String prefix, String suffix) {
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)) return 0;
+        try {
+            return Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static File checkpointFile(int n) {
+        return new File(AUTOSAVE_DIR_NAME, CHECKPOINT_PREFIX + n + CHECKPOINT_SUFFIX);
+    }
+
+    private static File journalFile(int n) {
+        return new File(AUTOSAVE_DIR_NAME, JOURNAL_PREFIX + n + JOURNAL_SUFFIX);
+    }
+
+    // 写盘线程：删除编号小于 n 的检查点和日志（n 为 Integer.MAX_VALUE 时删除全部）
+    private static void deleteEpochsBefore(int n) {
+        File[] files = new File(AUTOSAVE_DIR_NAME).listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            int e = Math.max(parseEpoch(file.getName(), CHECKPOINT_PREFIX, CHECKPOINT_SUFFIX),
+                             parseEpoch(file.getName(), JOURNAL_PREFIX, JOURNAL_SUFFIX));
+            if (e > 0 && e < n) {
+                file.delete();
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 删除所有自动保存文件。排在所有未完成的自动保存写入之后执行并等待完成，
+     * 保证删除之后不会再有旧的写入把文件重新创建出来。
+     */
+    public void deleteFile() {
+        try {
+            writer.submit(() -> {
+                if (openJournal != null) {
+                    openJournal.close();
+                    openJournal = null;
+                }
+                File autosaveDir = new File(AUTOSAVE_DIR_NAME);
+                if (autosaveDir.isDirectory()) {
+                    deleteEpochsBefore(Integer.MAX_VALUE);
+                    System.out.println("已删除原自动保存备份文件");
+                    if (autosaveDir.list().length == 0) {
+                        autosaveDir.delete();
+                    }
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("删除自动保存文件失败：" + e.getCause().getMessage());
+        }
+    }
+}
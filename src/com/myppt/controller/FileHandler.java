@@ -3,7 +3,16 @@ package com.myppt.controller;
 import com.myppt.model.Presentation;
 import com.myppt.model.Slide;
 import com.myppt.utils.PdfExporter;
+import com.myppt.utils.PresentationFile;
+import com.myppt.utils.SlidePreloader;
 import java.io.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
@@ -11,6 +20,7 @@ import javax.swing.filechooser.FileFilter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 
 /**
  * 负责处理所有文件I/O操作，如新建、打开、保存、导出等。
@@ -20,6 +30,23 @@ public class FileHandler {
     private File currentFile = null;
     private boolean isDirty = false;
 
+    // 修改计数：每次修改递增；savedEditCount 是已经真正写到磁盘上的修改计数
+    private long editCount = 0;
+    private long savedEditCount = 0;
+
+    // 后台保存：同一时间最多一个保存任务，保存期间再次请求保存时，结束后自动再保存一次
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "MyPPT-Save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private SaveJob currentSave = null;
+    private File pendingSaveFile = null;
+    private int saveProgress = -1; // 标题栏显示的保存进度，-1 表示没有在保存
+
+    // 打开文件后在后台并行加载其余页面，没有在加载时为 null
+    private SlidePreloader preloader = null;
+
     public FileHandler(AppController controller) {
         this.controller = controller;
     }
@@ -27,9 +54,11 @@ public class FileHandler {
     public void newFile() {
         if (!promptToSave()) return;
 
+        stopPreload();
         controller.setPresentation(new Presentation());
         this.currentFile = null;
         setDirty(false);
+        controller.getAutosaveManager().reset();
 
         controller.getMainFrame().getCanvasPanel().setPresentation(controller.getPresentation());
         // [FIX] Removed call to non-existent UndoManager.clear() method
@@ -38,14 +67,27 @@ public class FileHandler {
     }
 
     public boolean saveToFile() {
+        return saveToFile(false);
+    }
+
+    /**
+     * 保存到当前文件，没有当前文件时弹出另存为对话框。
+     * @param wait 为 true 时等待写盘完成后才返回（关闭窗口、新建、打开前的“是否保存”）
+     * @return 保存成功（或已在后台开始保存）时返回 true
+     */
+    private boolean saveToFile(boolean wait) {
         if (currentFile == null) {
-            return saveAsToFile();
+            return saveAsToFile(wait);
         } else {
-            return doSave(currentFile);
+            return doSave(currentFile, wait);
         }
     }
 
     public boolean saveAsToFile() {
+        return saveAsToFile(false);
+    }
+
+    private boolean saveAsToFile(boolean wait) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("另存为...");
         fileChooser.setFileFilter(new FileFilter() {
@@ -63,26 +105,125 @@ public class FileHandler {
                 fileToSave = new File(fileToSave.getAbsolutePath() + ".myppt");
             }
             
-            if (doSave(fileToSave)) {
-                this.currentFile = fileToSave;
-                controller.getUiUpdater().updateTitle();
-                return true;
-            }
+            return doSave(fileToSave, wait);
         }
         return false;
     }
 
-    private boolean doSave(File file) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(controller.getPresentation());
-            setDirty(false);
-            JOptionPane.showMessageDialog(controller.getMainFrame(), "保存成功！");
-            return true;
+    /**
+     * 保存演示文稿。在事件分发线程上拍快照（只序列化修改过的页面），写盘和同步交给后台线程，
+     * 编辑器在写盘期间保持可用。写盘期间的修改不在这次保存的快照里，保存完成后仍标记为未保存。
+     */
+    private boolean doSave(File file, boolean wait) {
+        if (currentSave != null) {
+            if (!wait) {
+                // 上一次保存还没结束：它完成后再用最新的模型保存一次
+                pendingSaveFile = file;
+                return true;
+            }
+            waitForSave();
+        }
+
+        Presentation presentation = controller.getPresentation();
+        warnUnreadableSlides(presentation);
+        PresentationFile.Snapshot snapshot;
+        try {
+            snapshot = PresentationFile.snapshot(presentation);
         } catch (IOException e) {
             e.printStackTrace();
             JOptionPane.showMessageDialog(controller.getMainFrame(), "保存失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
             return false;
         }
+
+        SaveJob job = new SaveJob(presentation, file, editCount);
+        currentSave = job;
+        setSaveProgress(0);
+        job.future = saveExecutor.submit(() -> {
+            try {
+                // 同一文件只追加修改过的页面
+                PresentationFile.save(snapshot, file, percent -> SwingUtilities.invokeLater(() -> {
+                    if (currentSave == job) setSaveProgress(percent);
+                }));
+            } catch (IOException | RuntimeException e) {
+                job.error = e;
+            }
+            SwingUtilities.invokeLater(() -> finishSave(job, !wait));
+        });
+
+        if (wait) {
+            waitForSave();
+            return job.error == null;
+        }
+        return true;
+    }
+
+    /**
+     * 读取失败的页面在保存时按原记录复制，不会写入编辑器中显示的空白页面；提示用户这些页面上的修改不会被保存。
+     */
+    private void warnUnreadableSlides(Presentation presentation) {
+        StringBuilder message = new StringBuilder();
+        List<Slide> slides = presentation.getSlides();
+        for (int i = 0; i < slides.size(); i++) {
+            IOException error = slides.get(i).getLoadError();
+            if (error != null) {
+                message.append("第 ").append(i + 1).append(" 页: ").append(error.getMessage()).append('\n');
+            }
+        }
+        if (message.length() > 0) {
+            JOptionPane.showMessageDialog(controller.getMainFrame(),
+                "以下页面读取失败，保存时将原样保留文件中的内容，对这些页面的修改不会被保存:\n" + message,
+                "警告", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * 阻塞等待正在进行的后台保存完成，并立即处理它的结果。
+     */
+    private void waitForSave() {
+        SaveJob job = currentSave;
+        if (job == null) return;
+        try {
+            job.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            job.error = e.getCause();
+        }
+        pendingSaveFile = null; // 调用者接下来会自行保存或放弃
+        finishSave(job, false);
+    }
+
+    /**
+     * 在事件分发线程上处理保存结果。每个任务只处理一次（等待保存和 invokeLater 回调都可能调用）。
+     */
+    private void finishSave(SaveJob job, boolean showMessage) {
+        if (currentSave != job) return;
+        currentSave = null;
+        setSaveProgress(-1);
+
+        if (job.error != null) {
+            job.error.printStackTrace();
+            JOptionPane.showMessageDialog(controller.getMainFrame(), "保存失败: " + job.error.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+        } else if (controller.getPresentation() == job.presentation) {
+            // 只有快照之前的修改真正写到了磁盘上
+            currentFile = job.file;
+            savedEditCount = Math.max(savedEditCount, job.editCount);
+            setDirty(editCount != savedEditCount);
+            if (showMessage) {
+                JOptionPane.showMessageDialog(controller.getMainFrame(), "保存成功！");
+            }
+        }
+
+        if (pendingSaveFile != null) {
+            File file = pendingSaveFile;
+            pendingSaveFile = null;
+            doSave(file, false);
+        }
+    }
+
+    private void setSaveProgress(int percent) {
+        this.saveProgress = percent;
+        controller.getUiUpdater().updateTitle();
     }
 
     public void openFromFile() {
@@ -101,22 +242,43 @@ public class FileHandler {
 
         if (fileChooser.showOpenDialog(controller.getMainFrame()) == JFileChooser.APPROVE_OPTION) {
             currentFile = fileChooser.getSelectedFile();
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(currentFile))) {
-                Presentation loadedPresentation = (Presentation) ois.readObject();
+            try {
+                // 新格式只读取目录，页面在第一次显示时才加载；旧格式整体读取
+                Presentation loadedPresentation = PresentationFile.read(currentFile);
+                stopPreload();
                 controller.setPresentation(loadedPresentation);
                 setDirty(false);
+                controller.getAutosaveManager().reset();
                 
                 controller.getMainFrame().getCanvasPanel().setPresentation(loadedPresentation);
                 // [FIX] Removed call to non-existent UndoManager.clear() method
                 controller.getUiUpdater().updateUI();
                 SwingUtilities.invokeLater(controller::fitToWindow);
-            } catch (IOException | ClassNotFoundException e) {
+                // 当前页已经在上面的界面刷新中加载，其余页面以当前页为中心在后台并行加载
+                preloader = SlidePreloader.start(loadedPresentation);
+            } catch (IOException e) {
                 e.printStackTrace();
                 JOptionPane.showMessageDialog(controller.getMainFrame(), "打开失败: 文件可能已损坏或格式不兼容。", "错误", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
 
+    /**
+     * 切换页面后调用，让后台加载优先处理新的当前页附近的页面。
+     */
+    public void prioritizeSlide(Slide slide) {
+        if (preloader != null) {
+            preloader.focus(slide);
+        }
+    }
+
+    private void stopPreload() {
+        if (preloader != null) {
+            preloader.cancel();
+            preloader = null;
+        }
+    }
+
     public void exportToPdf() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("导出为PDF");
@@ -136,12 +298,14 @@ public class FileHandler {
             }
             
             try (PDDocument document = new PDDocument()) {
+                // 所有页面共用一个图片缓存，重复使用的图片在 PDF 中只嵌入一次
+                Map<String, PDImageXObject> imageCache = new HashMap<>();
                 for (Slide slide : controller.getPresentation().getSlides()) {
                     PDRectangle pageSize = PDRectangle.A4;
                     PDPage page = new PDPage(new PDRectangle(pageSize.getHeight(), pageSize.getWidth()));
                     document.addPage(page);
 
-                    PdfExporter exporter = new PdfExporter(document, page);
+                    PdfExporter exporter = new PdfExporter(document, page, imageCache);
                     exporter.drawSlideToPdf(slide);
                     exporter.close();
                 }
@@ -155,6 +319,7 @@ public class FileHandler {
     }
 
     public boolean promptToSave() {
+        waitForSave(); // 先让正在进行的后台保存写完
         if (!isDirty) return true;
 
         int result = JOptionPane.showConfirmDialog(
@@ -163,7 +328,7 @@ public class FileHandler {
         );
 
         switch (result) {
-            case JOptionPane.YES_OPTION: return saveToFile();
+            case JOptionPane.YES_OPTION: return saveToFile(true);
             case JOptionPane.NO_OPTION: return true;
             default: return false;
         }
@@ -171,6 +336,10 @@ public class FileHandler {
 
     public boolean isDirty() { return isDirty; }
     public void markAsDirty() {
+        // 不经过命令的实时编辑（数值框、透明度滑块等）也只发生在当前页上，一并记入该页的修改
+        controller.getPresentation().getCurrentSlide().touch();
+        controller.getUndoManager().markModified();
+        editCount++;
         if (!this.isDirty) {
             this.isDirty = true;
             controller.getUiUpdater().updateTitle();
@@ -178,7 +347,28 @@ public class FileHandler {
     }
     public void setDirty(boolean dirty) {
         this.isDirty = dirty;
+        if (!dirty) {
+            savedEditCount = editCount;
+        }
         controller.getUiUpdater().updateTitle();
     }
     public File getCurrentFile() { return currentFile; }
+    public int getSaveProgress() { return saveProgress; }
+
+    /**
+     * 一次后台保存任务。
+     */
+    private static class SaveJob {
+        final Presentation presentation; // 保存开始时的演示文稿，保存期间可能被新建/打开替换
+        final File file;
+        final long editCount;            // 快照时的修改计数
+        Future<?> future;
+        volatile Throwable error;
+
+        SaveJob(Presentation presentation, File file, long editCount) {
+            this.presentation = presentation;
+            this.file = file;
+            this.editCount = editCount;
+        }
+    }
 }
\ No newline at end of file
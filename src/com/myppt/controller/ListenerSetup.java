@@ -91,6 +91,18 @@ public class ListenerSetup {
             }
         });
 
+        // 点击缩略图（或用方向键）切换页面
+        mainFrame.getThumbnailPanel().addListSelectionListener(e -> {
+            if (uiUpdater.isUpdatingUI() || e.getValueIsAdjusting()) return;
+            int index = mainFrame.getThumbnailPanel().getSelectedIndex();
+            Presentation presentation = controller.getPresentation();
+            if (index >= 0 && presentation.getCurrentSlideIndex() != index) {
+                presentation.setCurrentSlideIndex(index);
+                mainFrame.getCanvasPanel().repaint(); // 切换页面后必须重绘画布
+                uiUpdater.updateUI(); // 更新整个UI以反映新页面的状态
+            }
+        });
+
         mainFrame.getFormatPainterButton().addActionListener(e -> {
             if (controller.getSelectedObject() != null) {
                 controller.setCopiedStyle(controller.getSelectedObject().getStyle());
@@ -317,7 +329,7 @@ public class ListenerSetup {
                     double newViewX = (mousePoint.x / oldScale * newScale) - mousePoint.x + viewPos.x;
                     double newViewY = (mousePoint.y / oldScale * newScale) - mousePoint.y + viewPos.y;
 
-                    mainFrame.getCanvasPanel().setScale(newScale);
+                    mainFrame.getCanvasPanel().zoomWithPreview(newScale); // 先显示拉伸的预览，停止滚动后再正式绘制
                     controller.setScale(newScale); // Update controller's scale
                     SwingUtilities.invokeLater(() -> viewport.setViewPosition(new Point((int)newViewX, (int)newViewY)));
                 } else if (e.isShiftDown()) { // Horizontal scroll
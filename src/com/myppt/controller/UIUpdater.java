@@ -2,12 +2,8 @@ package com.myppt.controller;
 
 import com.myppt.model.*;
 import com.myppt.view.MainFrame;
-import com.myppt.view.SlideThumbnail;
 import com.myppt.view.ThumbnailPanel;
 import java.awt.Font;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
-import java.util.List;
 
 /**
  * UI更新器 (UIUpdater)
@@ -46,6 +42,7 @@ public class UIUpdater {
      * 依次更新缩略图、画布重绘、属性面板和菜单状态。
      */
     public void updateUI() {
+        controller.getFileHandler().prioritizeSlide(controller.getPresentation().getCurrentSlide());
         updateThumbnailList();
         mainFrame.getCanvasPanel().repaint();
         updatePropertiesPanel();
@@ -53,43 +50,20 @@ public class UIUpdater {
     }
 
     /**
-     * 重建左侧的幻灯片缩略图列表。
-     * 当添加、删除页面或重新排序时调用。
+     * 同步左侧的幻灯片缩略图列表。
+     * 当添加、删除页面或重新排序时调用；只有变化的页面会被更新，当前页成为列表的选中项。
      */
     public void updateThumbnailList() {
         ThumbnailPanel panel = mainFrame.getThumbnailPanel();
-        panel.removeAll(); // 清空旧的缩略图
-        
         Presentation presentation = controller.getPresentation();
-        List<Slide> slides = presentation.getSlides();
-        
-        // 遍历所有幻灯片并创建缩略图组件
-        for (int i = 0; i < slides.size(); i++) {
-            SlideThumbnail thumb = new SlideThumbnail(slides.get(i), i + 1);
-            final int index = i;
-            
-            // 为每个缩略图添加点击事件，用于切换页面
-            thumb.addMouseListener(new MouseAdapter() {
-                @Override
-                public void mouseClicked(MouseEvent e) {
-                    if (presentation.getCurrentSlideIndex() != index) {
-                        presentation.setCurrentSlideIndex(index);
-                        mainFrame.getCanvasPanel().repaint(); // 切换页面后必须重绘画布
-                        updateUI(); // 更新整个UI以反映新页面的状态
-                    }
-                }
-            });
-            
-            // 高亮显示当前选中的页面
-            if (i == presentation.getCurrentSlideIndex()) {
-                thumb.setSelected(true);
-            }
-            panel.add(thumb);
+
+        boolean wasUpdating = isUpdatingUI;
+        isUpdatingUI = true; // 程序设置列表选中项时不触发切换页面的监听器
+        try {
+            panel.setSlides(presentation.getSlides(), presentation.getCurrentSlideIndex());
+        } finally {
+            isUpdatingUI = wasUpdating;
         }
-        
-        // 刷新面板布局
-        panel.revalidate();
-        panel.repaint();
     }
     
     /**
@@ -104,7 +78,7 @@ public class UIUpdater {
 
     /**
      * 更新主窗口的标题栏。
-     * 显示当前文件名，如果文件有未保存的修改，则在标题后追加 "*" 号。
+     * 显示当前文件名，如果文件有未保存的修改，则在标题后追加 "*" 号；后台保存期间显示保存进度。
      */
     public void updateTitle() {
         String title = "My PowerPoint - ";
@@ -121,6 +95,10 @@ public class UIUpdater {
         if (fileHandler.isDirty()) {
             title += "*";
         }
+
+        if (fileHandler.getSaveProgress() >= 0) {
+            title += " (正在保存 " + fileHandler.getSaveProgress() + "%)";
+        }
         mainFrame.setTitle(title);
     }
     
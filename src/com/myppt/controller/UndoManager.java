@@ -1,6 +1,9 @@
 package com.myppt.controller;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
+import java.util.function.Consumer;
 import com.myppt.commands.Command;
 
 /**
@@ -10,11 +13,47 @@ import com.myppt.commands.Command;
 public class UndoManager {
     private Stack<Command> undoStack = new Stack<>();
     private Stack<Command> redoStack = new Stack<>();
+    private Consumer<Command> commandListener; // 命令执行、撤销、重做之后回调，用于跟踪哪些页面被修改
+    private final List<Runnable> changeListeners = new ArrayList<>(); // 模型版本号变化时回调
+    private long version = 0; // 模型版本号，每次执行/撤销/重做命令时递增
+
+    public void setCommandListener(Consumer<Command> listener) {
+        this.commandListener = listener;
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * 当前的模型版本号。版本号不变说明模型自上次读取以来没有被修改。
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * 记录一次不经过命令的修改（例如拖动数值框时的实时预览），同样递增模型版本号。
+     */
+    public void markModified() {
+        version++;
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+
+    private void fireCommandApplied(Command command) {
+        if (commandListener != null) {
+            commandListener.accept(command);
+        }
+        markModified();
+    }
 
     public void executeCommand(Command command) {
         command.execute();
         undoStack.push(command);
         redoStack.clear();
+        fireCommandApplied(command);
         System.out.println(">>> Command executed. Undo stack size: " + undoStack.size());
     }
 
@@ -24,6 +63,7 @@ public class UndoManager {
             Command command = undoStack.pop();
             command.undo();
             redoStack.push(command);
+            fireCommandApplied(command);
         }
     }
 
@@ -33,6 +73,7 @@ public class UndoManager {
             Command command = redoStack.pop();
             command.execute();
             undoStack.push(command);
+            fireCommandApplied(command);
         }
     }
 
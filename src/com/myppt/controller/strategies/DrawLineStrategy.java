@@ -2,6 +2,7 @@ package com.myppt.controller.strategies;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 
 import com.myppt.controller.AppController;
@@ -43,16 +44,20 @@ public class DrawLineStrategy implements InteractionStrategy {
     public void mouseDragged(MouseEvent e) {
         if (currentDrawingLine != null) {
             Point worldPoint = appController.convertScreenToWorld(e.getPoint());
+            Rectangle dirtyRegion = currentDrawingLine.getPaintBounds();
             currentDrawingLine.x2 = worldPoint.x;
             currentDrawingLine.y2 = worldPoint.y;
-            mainFrame.getCanvasPanel().repaint();
+            appController.getPresentation().getCurrentSlide().objectBoundsChanged(currentDrawingLine);
+            mainFrame.getCanvasPanel().repaintSlideRegion(dirtyRegion.union(currentDrawingLine.getPaintBounds()));
         }
         appController.repaintThumbnails();
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
-        // appController.markAsDirty();
+        if (currentDrawingLine != null) {
+            appController.markAsDirty(); // 拖动终点不经过命令，松开时记入当前页的修改
+        }
         currentDrawingLine = null;
         appController.setMode("SELECT");
     }
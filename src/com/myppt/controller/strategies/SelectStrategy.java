@@ -3,7 +3,6 @@ package com.myppt.controller.strategies;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.util.List;
-import java.util.Map;
 import java.awt.Rectangle;
 import java.awt.Cursor;
 import javax.swing.JMenuItem;
@@ -66,17 +65,16 @@ public class SelectStrategy implements InteractionStrategy {
         
         // 2. 检查是否点中了【已选中】对象的缩放控制点
         if (selectedObject != null) {
-            for (Map.Entry<ResizeHandle, Rectangle> entry : selectedObject.getResizeHandles().entrySet()) {
-                if (entry.getValue().contains(worldPoint)) {
-                    // 进入缩放模式
-                    activeResizeHandle = entry.getKey();
-                    originalBounds = selectedObject.getBounds();
-                    dragStartPoint = worldPoint;
-                    if (originalBounds.height != 0) {
-                        aspectRatio = (double) originalBounds.width / originalBounds.height;
-                    }
-                    return; // 结束方法，后续逻辑是移动或选择，缩放优先
+            ResizeHandle handle = selectedObject.getHandleAt(worldPoint);
+            if (handle != null) {
+                // 进入缩放模式
+                activeResizeHandle = handle;
+                originalBounds = selectedObject.getBounds();
+                dragStartPoint = worldPoint;
+                if (originalBounds.height != 0) {
+                    aspectRatio = (double) originalBounds.width / originalBounds.height;
                 }
+                return; // 结束方法，后续逻辑是移动或选择，缩放优先
             }
         }
         
@@ -119,6 +117,7 @@ public class SelectStrategy implements InteractionStrategy {
         if (selectedObject == null || dragStartPoint == null) return;
         wasDragged = true;
         Point worldPoint = appController.convertScreenToWorld(e.getPoint());
+        Rectangle dirtyRegion = selectedObject.getPaintBounds(); // 修改前占据的区域
         
         if (activeResizeHandle != null) {
             // 处理缩放
@@ -131,7 +130,9 @@ public class SelectStrategy implements InteractionStrategy {
             selectedObject.setY(objectStartPoint.y + dy);
         }
         
-        mainFrame.getCanvasPanel().repaint();
+        // 更新空间索引，并只重绘对象新旧位置的并集
+        appController.getPresentation().getCurrentSlide().objectBoundsChanged(selectedObject);
+        mainFrame.getCanvasPanel().repaintSlideRegion(dirtyRegion.union(selectedObject.getPaintBounds()));
         appController.repaintThumbnails();
     }
 
@@ -292,11 +293,9 @@ public class SelectStrategy implements InteractionStrategy {
         
         // 只有选中对象时才检测控制点
         if (selectedObject != null) {
-            for (java.util.Map.Entry<ResizeHandle, java.awt.Rectangle> entry : selectedObject.getResizeHandles().entrySet()) {
-                if (entry.getValue().contains(worldPoint)) {
-                    cursorType = entry.getKey().getCursor();
-                    break;
-                }
+            ResizeHandle handle = selectedObject.getHandleAt(worldPoint);
+            if (handle != null) {
+                cursorType = handle.getCursor();
             }
         }
         
@@ -1,15 +1,9 @@
 package com.myppt.model;
 
-import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.io.Serializable;
-import java.util.EnumMap;
-import java.util.Map;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.UUID;
 
 import com.myppt.controller.strategies.ResizeHandle;
@@ -31,6 +25,8 @@ public abstract class AbstractSlideObject implements Serializable {
     public int y;
 
     public static final int HANDLE_SIZE = 8; // 控制点小方块的大小
+    // 选中框（向外 3 像素、线宽最多 2）和控制点（半个 HANDLE_SIZE）超出包围盒的最大距离，再加 1 像素抗锯齿余量
+    private static final int SELECTION_MARGIN = HANDLE_SIZE / 2 + 5;
 
     // [!] 核心修复: 将边框样式常量提升到抽象基类
     public static final int BORDER_STYLE_SOLID = 0;
@@ -45,12 +41,30 @@ public abstract class AbstractSlideObject implements Serializable {
         this.y = y;
     }
 
+    /**
+     * 从 ModelCodec 的数据中读取公共字段，子类的解码构造方法先调用它。
+     */
+    AbstractSlideObject(ModelInput in) throws IOException {
+        this.x = in.readVarInt();
+        this.y = in.readVarInt();
+    }
+
+    /**
+     * 把字段写给 ModelCodec，子类重写时先调用 super.writeFields。
+     * 选中状态只是界面状态，不写出。
+     */
+    void writeFields(ModelOutput out) {
+        out.writeVarInt(x);
+        out.writeVarInt(y);
+    }
+
     public abstract Style getStyle();
     public abstract void setStyle(Style style);
 
-    // 这是一个抽象方法。
-    // 它只声明“所有子类都必须会画自己”，但具体怎么画，由子类自己去实现。
-    public abstract void draw(Graphics g);
+    /**
+     * 画出选中效果（选中框和控制点），只在编辑器中使用。实现需恢复修改过的 Graphics2D 状态。
+     */
+    public abstract void drawSelection(Graphics2D g2d);
 
     // [!] 新增: 抽象的碰撞检测方法
     public abstract boolean contains(Point p);
@@ -81,31 +95,77 @@ public abstract class AbstractSlideObject implements Serializable {
         this.selected = selected;
     }
 
+    // 包围盒上 8 个控制点的类型，以及各自在包围盒中的列和行（0 = 左/上，1 = 中，2 = 右/下）
+    private static final ResizeHandle[] BOX_HANDLES = {
+        ResizeHandle.TOP_LEFT, ResizeHandle.TOP_CENTER, ResizeHandle.TOP_RIGHT,
+        ResizeHandle.MIDDLE_LEFT, ResizeHandle.MIDDLE_RIGHT,
+        ResizeHandle.BOTTOM_LEFT, ResizeHandle.BOTTOM_CENTER, ResizeHandle.BOTTOM_RIGHT
+    };
+    private static final int[] BOX_HANDLE_COLUMNS = {0, 1, 2, 0, 2, 0, 1, 2};
+    private static final int[] BOX_HANDLE_ROWS = {0, 0, 0, 1, 1, 2, 2, 2};
+
+    /*
+     * 控制点的几何信息按下标逐个计算，不创建 Map 或 Rectangle：
+     * 每个控制点是以 (getHandleCenterX(i), getHandleCenterY(i)) 为中心、边长 HANDLE_SIZE 的小方块。
+     * 默认实现是包围盒上的 8 个点，适用于所有矩形包围盒的对象；直线重写为两个端点。
+     */
+
+    protected int getHandleCount() {
+        return BOX_HANDLES.length;
+    }
+
+    protected ResizeHandle getHandleType(int index) {
+        return BOX_HANDLES[index];
+    }
+
+    protected int getHandleCenterX(int index) {
+        return this.x + offsetInBox(BOX_HANDLE_COLUMNS[index], getWidth());
+    }
+
+    protected int getHandleCenterY(int index) {
+        return this.y + offsetInBox(BOX_HANDLE_ROWS[index], getHeight());
+    }
+
+    private static int offsetInBox(int position, int size) {
+        return position == 0 ? 0 : position == 1 ? size / 2 : size;
+    }
+
     /**
-     * 根据对象的边界计算并返回8个缩放控制点的位置。
-     * 默认实现适用于所有矩形包围盒的对象。
-     * @return 一个包含8个控制点类型及其位置(Rectangle)的Map。
+     * 返回点 p 所在的缩放控制点，不在任何控制点上时返回 null。
+     * 鼠标悬停和按下时调用，不分配任何对象。
      */
-    public Map<ResizeHandle, Rectangle> getResizeHandles() {
-        // 子类需要提供自己的 getBounds() 实现
-        Rectangle bounds = getBounds();
-        int x = bounds.x;
-        int y = bounds.y;
-        int width = bounds.width;
-        int height = bounds.height;
-        
-        EnumMap<ResizeHandle, Rectangle> handles = new EnumMap<>(ResizeHandle.class);
-        
-        handles.put(ResizeHandle.TOP_LEFT, new Rectangle(x - HANDLE_SIZE / 2, y - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        handles.put(ResizeHandle.TOP_CENTER, new Rectangle(x + width / 2 - HANDLE_SIZE / 2, y - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        handles.put(ResizeHandle.TOP_RIGHT, new Rectangle(x + width - HANDLE_SIZE / 2, y - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        handles.put(ResizeHandle.MIDDLE_LEFT, new Rectangle(x - HANDLE_SIZE / 2, y + height / 2 - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        handles.put(ResizeHandle.MIDDLE_RIGHT, new Rectangle(x + width - HANDLE_SIZE / 2, y + height / 2 - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        handles.put(ResizeHandle.BOTTOM_LEFT, new Rectangle(x - HANDLE_SIZE / 2, y + height - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        handles.put(ResizeHandle.BOTTOM_CENTER, new Rectangle(x + width / 2 - HANDLE_SIZE / 2, y + height - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        handles.put(ResizeHandle.BOTTOM_RIGHT, new Rectangle(x + width - HANDLE_SIZE / 2, y + height - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        
-        return handles;
+    public ResizeHandle getHandleAt(Point p) {
+        for (int i = 0; i < getHandleCount(); i++) {
+            int left = getHandleCenterX(i) - HANDLE_SIZE / 2;
+            int top = getHandleCenterY(i) - HANDLE_SIZE / 2;
+            if (p.x >= left && p.x < left + HANDLE_SIZE && p.y >= top && p.y < top + HANDLE_SIZE) {
+                return getHandleType(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 用当前颜色画出所有缩放控制点（对象被选中时在 draw 中调用）。
+     */
+    protected void fillResizeHandles(Graphics2D g2d) {
+        for (int i = 0; i < getHandleCount(); i++) {
+            g2d.fillRect(getHandleCenterX(i) - HANDLE_SIZE / 2, getHandleCenterY(i) - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE);
+        }
+    }
+
+    /**
+     * 包围盒的宽度。有宽高字段的子类直接返回字段，避免为此创建 Rectangle。
+     */
+    public int getWidth() {
+        return getBounds().width;
+    }
+
+    /**
+     * 包围盒的高度。
+     */
+    public int getHeight() {
+        return getBounds().height;
     }
 
     /**
@@ -116,30 +176,32 @@ public abstract class AbstractSlideObject implements Serializable {
 
     public abstract void setBounds(Rectangle bounds);
 
+    /**
+     * 对象绘制时可能涂到的区域：包围盒加上描边、选中框和控制点超出的部分。
+     * 画布用它计算局部重绘的区域，并跳过与重绘区域不相交的对象。
+     */
+    public Rectangle getPaintBounds() {
+        Rectangle bounds = getBounds();
+        int margin = SELECTION_MARGIN + (int) Math.ceil(getStrokeOverhang());
+        bounds.grow(margin, margin);
+        return bounds;
+    }
 
-    public UUID getId() { return id; }
-
-    // [!] 新增: 在深拷贝后生成一个新的ID
-    protected void assignNewId() {
-        this.id = UUID.randomUUID();
+    /**
+     * 描边超出包围盒的距离，有边框或线宽的子类重写。
+     */
+    protected double getStrokeOverhang() {
+        return 0;
     }
+
+
+    public UUID getId() { return id; }
     
     public AbstractSlideObject deepCopy() {
         try {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(bos);
-            oos.writeObject(this);
-            oos.flush();
-            byte[] bytes = bos.toByteArray();
-            
-            ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-            ObjectInputStream ois = new ObjectInputStream(bis);
-            AbstractSlideObject copy = (AbstractSlideObject) ois.readObject();
-            
-            copy.assignNewId(); // [!] 核心: 为副本分配新的ID
-            
-            return copy;
-        } catch (IOException | ClassNotFoundException e) {
+            // 通过 ModelCodec 编码再解码，解码出的副本自然拥有新的ID
+            return ModelCodec.copy(this);
+        } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
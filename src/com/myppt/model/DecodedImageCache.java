@@ -0,0 +1,194 @@
+package com.myppt.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 所有解码后图片（像素数据）的全局缓存（单例），总大小受字节预算限制。
+ * <p>
+ * ImageBlob 自己只保留压缩的图片字节，解码结果（连同各级缩小版本，见 ImagePyramid）放在这里；
+ * 超出预算时按最近最少使用（LRU）的顺序，先把图片缩减为最小的一级（绘制时用它顶替，画面变模糊但不闪烁），
+ * 仍然超出时再整个淘汰，被淘汰的图片下次绘制时从压缩字节重新解码。
+ * <p>
+ * 当前帧和上一帧用到的图片被钉住，不会被缩减或淘汰（编辑区、放映窗口每次绘制时调用 {@link #beginFrame()}）。
+ * 否则屏幕上的图片合计超过预算时，每解码完一张就会挤掉另一张正在显示的图片，它重绘时又要重新解码，循环不止。
+ * 钉住的图片可以让用量暂时超出预算。单独超过预算的图片只保留放得下的较小几级。
+ * <p>
+ * 预算默认 256MB，可以用系统属性 -Dmyppt.imageCacheMB=N 或 {@link #setBudgetBytes(long)} 调整。
+ * 命中、未命中（实际解码的次数）、缩减和淘汰次数用于按机器内存调整预算。
+ */
+public final class DecodedImageCache {
+    private static final long DEFAULT_BUDGET_MB = 256;
+    private static final DecodedImageCache instance = new DecodedImageCache(
+        Long.getLong("myppt.imageCacheMB", DEFAULT_BUDGET_MB) << 20);
+
+    // accessOrder = true：迭代顺序从最久未使用到最近使用
+    private final LinkedHashMap<ImageBlob, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long budgetBytes;
+    private long usedBytes = 0;
+    private long frame = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long shrinks = 0;
+    private long evictions = 0;
+
+    private DecodedImageCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static DecodedImageCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * 开始新的一帧。此后上上一帧及更早用到、这一帧和上一帧都没有再用到的图片才可以被缩减或淘汰。
+     */
+    public synchronized void beginFrame() {
+        frame++;
+    }
+
+    /**
+     * 取出已解码的图片，标记为最近使用并在当前帧中钉住。
+     * @return 不在缓存中（从未解码或已被淘汰）时返回 null
+     */
+    synchronized ImagePyramid get(ImageBlob blob) {
+        Entry entry = entries.get(blob);
+        if (entry == null) {
+            return null;
+        }
+        hits++;
+        entry.lastFrame = frame;
+        return entry.pyramid;
+    }
+
+    /**
+     * 缓存中的版本是否因为内存紧张被缩减过，重新解码能得到更清晰的版本。
+     * 图片单独超过预算时保留下来的较小几级已经是能放进缓存的最清晰版本，不算缩减过，否则每次绘制都会重新解码它。
+     */
+    synchronized boolean isDegraded(ImageBlob blob) {
+        Entry entry = entries.get(blob);
+        return entry != null && !entry.pyramid.isComplete() && !entry.capped;
+    }
+
+    /**
+     * 记录一次未命中：缓存中没有可用的版本，图片需要重新解码。
+     */
+    synchronized void recordMiss() {
+        misses++;
+    }
+
+    /**
+     * 放入一张解码后的图片，必要时缩减或淘汰没有被钉住的图片。
+     * 新图片在当前帧中钉住；它单独超过预算时只保留放得下的较小几级。
+     */
+    synchronized void put(ImageBlob blob, ImagePyramid pyramid) {
+        boolean capped = pyramid.bytes() > budgetBytes;
+        if (capped) {
+            pyramid = pyramid.trimmedTo(budgetBytes);
+            shrinks++;
+        }
+        Entry old = entries.put(blob, new Entry(pyramid, frame, capped));
+        if (old != null) {
+            usedBytes -= old.pyramid.bytes();
+        }
+        usedBytes += pyramid.bytes();
+        trim();
+    }
+
+    /**
+     * 图片条目从图片存储中移除时调用，立即释放其解码结果。
+     */
+    synchronized void remove(ImageBlob blob) {
+        Entry entry = entries.remove(blob);
+        if (entry != null) {
+            usedBytes -= entry.pyramid.bytes();
+        }
+    }
+
+    private void trim() {
+        // 第一遍：把没有钉住的图片缩减为最小的一级
+        Iterator<Entry> it = entries.values().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Entry entry = it.next();
+            if (!isPinned(entry) && entry.pyramid.canShrink()) {
+                ImagePyramid smallest = entry.pyramid.trimmedTo(0);
+                usedBytes -= entry.pyramid.bytes() - smallest.bytes();
+                entry.pyramid = smallest;
+                entry.capped = false;
+                shrinks++;
+            }
+        }
+        // 第二遍：仍然超出时整个淘汰
+        it = entries.values().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            Entry entry = it.next();
+            if (!isPinned(entry)) {
+                usedBytes -= entry.pyramid.bytes();
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    private boolean isPinned(Entry entry) {
+        return entry.lastFrame >= frame - 1;
+    }
+
+    private static final class Entry {
+        ImagePyramid pyramid;
+        long lastFrame;
+        boolean capped; // 单独超过预算，只保留了放得下的较小几级
+
+        Entry(ImagePyramid pyramid, long lastFrame, boolean capped) {
+            this.pyramid = pyramid;
+            this.lastFrame = lastFrame;
+            this.capped = capped;
+        }
+    }
+
+    // --- 配置与统计 ---
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * 修改预算，超出的部分立即淘汰。
+     */
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+        trim();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getShrinks() {
+        return shrinks;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("解码图片缓存: %d 张, %.1f/%.1f MB, 命中 %d, 未命中 %d, 缩减 %d, 淘汰 %d",
+            entries.size(), usedBytes / 1048576.0, budgetBytes / 1048576.0, hits, misses, shrinks, evictions);
+    }
+}
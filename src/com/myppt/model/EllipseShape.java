@@ -1,13 +1,13 @@
 package com.myppt.model;
 
 import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.geom.Ellipse2D; // 使用Ellipse2D可以更精确地进行绘制和碰撞检测
-import java.awt.BasicStroke;
+
+import java.io.IOException;
 
 public class EllipseShape extends AbstractSlideObject {
     private static final long serialVersionUID = 1L;
@@ -27,6 +27,28 @@ public class EllipseShape extends AbstractSlideObject {
         this.fillColor = fillColor;
     }
 
+    // ModelCodec 解码用
+    EllipseShape(ModelInput in) throws IOException {
+        super(in);
+        this.width = in.readVarInt();
+        this.height = in.readVarInt();
+        this.fillColor = in.readColor();
+        this.borderColor = in.readColor();
+        this.borderWidth = in.readDouble();
+        this.borderStyle = in.readVarUInt();
+    }
+
+    @Override
+    void writeFields(ModelOutput out) {
+        super.writeFields(out);
+        out.writeVarInt(width);
+        out.writeVarInt(height);
+        out.writeColor(fillColor);
+        out.writeColor(borderColor);
+        out.writeDouble(borderWidth);
+        out.writeVarUInt(borderStyle);
+    }
+
     public void setFillColor(Color fillColor) {
         this.fillColor = fillColor;
     }
@@ -34,6 +56,11 @@ public class EllipseShape extends AbstractSlideObject {
     public void setBorderColor(Color borderColor) { this.borderColor = borderColor; }
     public double getBorderWidth() { return borderWidth; }
     public void setBorderWidth(double borderWidth) { this.borderWidth = borderWidth; }
+
+    @Override
+    protected double getStrokeOverhang() {
+        return borderWidth; // 描边居中，斜接的拐角最多超出约 0.71 倍线宽，按整个线宽留余量
+    }
     public int getBorderStyle() { return borderStyle; }
     public void setBorderStyle(int borderStyle) { this.borderStyle = borderStyle; }
 
@@ -44,58 +71,16 @@ public class EllipseShape extends AbstractSlideObject {
         return ellipse.contains(p);
     }
 
+    // 选中时绘制一个比原椭圆稍大的虚线椭圆和控制点
     @Override
-    public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g;
-        
+    public void drawSelection(Graphics2D g2d) {
         Color originalColor = g2d.getColor();
         Stroke originalStroke = g2d.getStroke();
-
-        // 绘制填充椭圆
-        g2d.setColor(this.fillColor);
-        g2d.fillOval(this.x, this.y, this.width, this.height);
-        
-        // [!] 核心修改: 绘制自定义边框
-        if (borderWidth > 0) { // 只有当边框宽度大于0时才绘制
-            g2d.setColor(this.borderColor);
-
-            Stroke borderStroke;
-            float width = (float) this.borderWidth;
-            switch (borderStyle) {
-                case BORDER_STYLE_DASHED:
-                    // 虚线: 10像素实，5像素空
-                    borderStroke = new BasicStroke(width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, new float[]{10.0f, 5.0f}, 0.0f);
-                    break;
-                case BORDER_STYLE_DOTTED:
-                    // 点线: 宽度本身是点，宽度本身是空
-                    borderStroke = new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 10.0f, new float[]{width, width * 2}, 0.0f);
-                    break;
-                case BORDER_STYLE_SOLID:
-                default:
-                    borderStroke = new BasicStroke(width);
-                    break;
-            }
-            g2d.setStroke(borderStroke);
-            g2d.drawOval(this.x, this.y, this.width, this.height);
-        }
-
-        // 如果被选中，绘制高亮
-        if (this.selected) {
-            // [!] 核心修复: 添加虚线框的绘制，并且画的是椭圆
-            g2d.setColor(Color.LIGHT_GRAY);
-            Stroke dashed = new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{4, 4}, 0);
-            g2d.setStroke(dashed);
-            // [!] 画一个比原椭圆稍大的虚线椭圆
-            g2d.drawOval(this.x - 3, this.y - 3, this.width + 6, this.height + 6);
-            
-            // 恢复实线笔触再画控制点
-            g2d.setStroke(originalStroke); 
-            g2d.setColor(Color.BLUE);
-            for (Rectangle handle : getResizeHandles().values()) {
-                g2d.fill(handle);
-            }
-        }
-
+        g2d.setColor(Color.LIGHT_GRAY);
+        g2d.setStroke(StrokeCache.SELECTION_OUTLINE_THIN);
+        g2d.drawOval(this.x - 3, this.y - 3, this.width + 6, this.height + 6);
+        g2d.setColor(Color.BLUE);
+        fillResizeHandles(g2d);
         g2d.setColor(originalColor);
         g2d.setStroke(originalStroke);
     }
@@ -0,0 +1,222 @@
+package com.myppt.model;
+
+import java.awt.Dimension;
+import java.awt.Image;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * 图片存储中的一个条目：一份按内容哈希标识的图片字节。
+ * 同一张图片无论被多少个 ImageObject 引用（复制粘贴、多页重复使用），
+ * 内存中都只有一份字节，同一时刻最多一份解码结果。
+ * 解码被推迟到第一次真正需要绘制时，在后台线程上进行；在此之前只从文件头读取图片尺寸。
+ * 解码结果放在 DecodedImageCache 中，内存不够时会被缩减或淘汰，之后需要时再从字节重新解码。
+ * 实例由 ImageBlobStore 创建和计数，不可变的字节数组绝不能被修改。
+ */
+public final class ImageBlob {
+    private final String key;
+    private final byte[] data;
+    private boolean failed;  // 解码失败过，不再重试
+    private boolean decoding; // 是否已经交给后台线程解码
+    private Dimension size;  // 从文件头读取的像素尺寸，不解码像素
+    private boolean sizeRead;
+    int refCount;            // 由 ImageBlobStore 维护
+
+    // 后台解码线程，给事件分发线程留一个核心
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1), r -> {
+            Thread thread = new Thread(r, "MyPPT-ImageDecode");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    ImageBlob(String key, byte[] data) {
+        this.key = key;
+        this.data = data;
+    }
+
+    /**
+     * 图片内容的 SHA-256 哈希（十六进制）。
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 原始图片字节（PNG/JPEG 等压缩格式）。调用者不得修改返回的数组。
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * 返回解码后的图片，尚未解码时在当前线程上解码（可能较慢）。
+     * 图片单独超过解码缓存的预算时，返回的是缓存中保留下来的最大一级。
+     * @return 解码后的图片；数据为空或格式不受支持时返回 null
+     */
+    public Image getImage() {
+        ImagePyramid pyramid = getPyramid();
+        return pyramid == null ? null : pyramid.original();
+    }
+
+    /**
+     * 返回缓存中已经解码好的、最适合按指定像素尺寸绘制的一级图片，不会触发解码。
+     * 缓存被缩减过时返回保留下来的最大一级，可能比需要的小。
+     * @param targetWidth 图片在设备上实际占用的像素宽度
+     * @param targetHeight 图片在设备上实际占用的像素高度
+     * @return 尚未解码、已被淘汰或解码失败时返回 null（用 {@link #isFailed()} 区分）
+     */
+    public Image getDecodedImage(double targetWidth, double targetHeight) {
+        ImagePyramid pyramid = DecodedImageCache.getInstance().get(this);
+        return pyramid == null ? null : pyramid.levelFor(targetWidth, targetHeight);
+    }
+
+    /**
+     * 缓存中的解码结果是否因为内存紧张被缩减过。此时 {@link #getDecodedImage} 返回的图片可能比需要的小，
+     * 可以用 {@link #decodeLater()} 重新解码出清晰的版本。
+     */
+    public boolean isDegraded() {
+        return DecodedImageCache.getInstance().isDegraded(this);
+    }
+
+    // 取出缓存中的解码结果，没有或被缩减过时在当前线程上解码并生成各级缩小版本
+    private ImagePyramid getPyramid() {
+        DecodedImageCache cache = DecodedImageCache.getInstance();
+        ImagePyramid pyramid = cache.get(this);
+        if ((pyramid != null && !cache.isDegraded(this)) || isFailed()) {
+            return pyramid;
+        }
+        cache.recordMiss();
+        Image image = decode(); // 解码期间不持有锁，绘制线程询问状态时不会被阻塞
+        if (image == null) {
+            synchronized (this) {
+                failed = true;
+            }
+            return null;
+        }
+        pyramid = ImagePyramid.build(image);
+        cache.put(this, pyramid);
+        return pyramid; // 放入缓存时可能被缩减，调用者用的仍是这次完整的结果
+    }
+
+    /**
+     * 是否解码失败过（数据损坏或格式不受支持）。
+     */
+    public synchronized boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * 在后台线程上解码图片，完成后通知 ImageBlobStore 的解码监听器。解码失败过或正在解码时什么也不做。
+     */
+    public void decodeLater() {
+        synchronized (this) {
+            if (failed || decoding) return;
+            decoding = true;
+        }
+        DECODER.execute(() -> {
+            try {
+                getPyramid();
+            } finally {
+                synchronized (this) {
+                    decoding = false;
+                }
+            }
+            ImageBlobStore.getInstance().fireDecoded(this);
+        });
+    }
+
+    /**
+     * 直接从字节解码一份不小于指定像素尺寸的缩小版本（解码时按整数倍隔行隔列取样），结果不放入解码缓存。
+     * 用于缩略图等只需要小尺寸的场合：不必解码整张原图，也不会挤掉编辑区正在使用的图片。
+     * @param targetWidth 需要的像素宽度
+     * @param targetHeight 需要的像素高度
+     * @return 解码失败时返回 null
+     */
+    public Image decodeSubsampled(double targetWidth, double targetHeight) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int step = (int) Math.min(reader.getWidth(0) / Math.max(1.0, targetWidth),
+                    reader.getHeight(0) / Math.max(1.0, targetHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("按缩小尺寸解码图片失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 图片的像素尺寸，只读取文件头，不解码像素。
+     * @return 图片尺寸；格式无法识别时返回 null
+     */
+    public synchronized Dimension getSize() {
+        if (!sizeRead) {
+            sizeRead = true;
+            size = readSize();
+        }
+        return size == null ? null : new Dimension(size);
+    }
+
+    private Dimension readSize() {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            System.err.println("读取图片尺寸失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Image decode() {
+        if (data == null || data.length == 0) {
+            System.err.println("警告: 图像数据为空，无法加载图片。");
+            return null;
+        }
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(data)) {
+            Image result = ImageIO.read(bais);
+            if (result == null) {
+                System.err.println("错误: ImageIO.read() 返回 null，可能图片格式不受支持或数据损坏。数据长度: " + data.length);
+            }
+            return result;
+        } catch (IOException e) {
+            System.err.println("严重错误: 从字节数据加载图片时发生 IOException: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
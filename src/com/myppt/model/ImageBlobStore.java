@@ -0,0 +1,123 @@
+package com.myppt.model;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 按内容哈希寻址的图片存储（单例）。
+ * <p>
+ * 每个 ImageObject 只持有对某个 ImageBlob 的引用，存储负责：
+ * 1. 去重：相同内容的图片只保留一份字节和一份解码结果；
+ * 2. 引用计数：ImageObject 创建（含反序列化、深拷贝）时 acquire，
+ *    被垃圾回收时 release，计数归零的条目从存储中移除。
+ * 整个进程共用一个存储，因此跨文件复制粘贴的图片也会共享同一份数据。
+ */
+public final class ImageBlobStore {
+    private static final ImageBlobStore instance = new ImageBlobStore();
+
+    private final Map<String, ImageBlob> blobs = new HashMap<>();
+    private final List<Consumer<ImageBlob>> decodeListeners = new CopyOnWriteArrayList<>();
+
+    private ImageBlobStore() {}
+
+    public static ImageBlobStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * 按内容获取（必要时创建）一个图片条目，并增加其引用计数。
+     * @param data 图片字节，调用后不得再修改
+     */
+    public ImageBlob acquire(byte[] data) {
+        return acquire(contentKey(data), data);
+    }
+
+    /**
+     * 以已知的内容哈希获取（必要时创建）一个图片条目，并增加其引用计数。
+     * 用于从文件读取图片记录时，避免重复计算哈希。
+     */
+    public synchronized ImageBlob acquire(String key, byte[] data) {
+        ImageBlob blob = blobs.get(key);
+        if (blob == null) {
+            blob = new ImageBlob(key, data);
+            blobs.put(key, blob);
+        }
+        blob.refCount++;
+        return blob;
+    }
+
+    /**
+     * 如果存储中已有该哈希的图片，增加其引用计数并返回；否则返回 null。
+     */
+    public synchronized ImageBlob acquireExisting(String key) {
+        ImageBlob blob = blobs.get(key);
+        if (blob != null) {
+            blob.refCount++;
+        }
+        return blob;
+    }
+
+    /**
+     * 减少引用计数，计数归零时从存储中移除。
+     */
+    public synchronized void release(String key) {
+        ImageBlob blob = blobs.get(key);
+        if (blob != null && --blob.refCount <= 0) {
+            blobs.remove(key);
+            DecodedImageCache.getInstance().remove(blob);
+        }
+    }
+
+    /**
+     * 注册图片在后台解码完成时的监听器。监听器在解码线程上被调用。
+     */
+    public void addDecodeListener(Consumer<ImageBlob> listener) {
+        decodeListeners.add(listener);
+    }
+
+    void fireDecoded(ImageBlob blob) {
+        for (Consumer<ImageBlob> listener : decodeListeners) {
+            listener.accept(blob);
+        }
+    }
+
+    /**
+     * 当前存储中不同图片的数量。
+     */
+    public synchronized int size() {
+        return blobs.size();
+    }
+
+    /**
+     * 当前存储中所有图片原始字节的总大小。
+     */
+    public synchronized long totalBytes() {
+        long total = 0;
+        for (ImageBlob blob : blobs.values()) {
+            total += blob.getData().length;
+        }
+        return total;
+    }
+
+    /**
+     * 计算图片内容的 SHA-256 哈希（十六进制），作为存储和文件中图片记录的键。
+     */
+    public static String contentKey(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("当前 JRE 不支持 SHA-256", e);
+        }
+    }
+}
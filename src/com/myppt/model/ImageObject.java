@@ -1,27 +1,26 @@
 package com.myppt.model;
 
 import java.awt.Color;
-import java.awt.Graphics;
+import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.awt.Image; // 使用 java.awt.Image 来存储图片数据
 import java.awt.Point;
 import java.awt.Stroke;
-import java.awt.AlphaComposite;
-import java.awt.BasicStroke;
 import java.io.IOException;
-import java.io.ByteArrayInputStream;
-import javax.imageio.ImageIO;
+import java.lang.ref.Cleaner;
 import java.awt.Rectangle;
 
 
 public class ImageObject extends AbstractSlideObject {
     private static final long serialVersionUID = 1L;
-    
-    // transient 关键字告诉Java序列化机制：不要尝试保存这个字段。
-    // 因为Image对象本身通常不是Serializable的，而且我们应该保存图片路径而不是图片数据。
 
-    private transient Image image; // 运行时缓存，依然 transient
-    private byte[] imageData; // [!] 核心修改: 不再是路径，而是字节数组
+    // 图片被 ImageObject 回收时，通过 Cleaner 归还在 ImageBlobStore 中的引用计数
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    // [!] 核心修改: 图片字节不再由每个对象各自持有，而是引用图片存储中按内容哈希共享的条目。
+    // transient 关键字告诉Java序列化机制：不要尝试保存这个字段，序列化时只写 blobKey。
+    private transient ImageBlob blob;
+    private String blobKey;   // 图片内容的哈希，指向 ImageBlobStore 中的条目
+    private byte[] imageData; // 仅旧版文件中有值，读取后立即转存到 ImageBlobStore 并清空
     private int width;
     private int height;
     private final double aspectRatio;
@@ -29,19 +28,13 @@ public class ImageObject extends AbstractSlideObject {
 
     public ImageObject(int x, int y, byte[] imageData) throws IOException {
         super(x, y);
-        this.imageData = imageData;
-        
-        try { // [!] 核心修复: 捕获异常
-            loadImageFromData(); 
-        } catch (IOException e) {
-            System.err.println("ImageObject 构造函数中加载图片失败: " + e.getMessage());
-            this.image = null; // 确保在加载失败时 image 为 null
-            throw e; // 重新抛出，让 AppController 处理
-        }
-        
-        if (this.image != null) {
-            int originalWidth = this.image.getWidth(null);
-            int originalHeight = this.image.getHeight(null);
+        attachBlob(ImageBlobStore.getInstance().acquire(imageData));
+        // 只从文件头读取尺寸，像素在第一次绘制时才解码
+        Dimension size = blob.getSize();
+
+        if (size != null && size.width > 0 && size.height > 0) {
+            int originalWidth = size.width;
+            int originalHeight = size.height;
             this.aspectRatio = (double) originalWidth / originalHeight;
 
             // [!] 核心修复: 限制图片插入时的默认尺寸
@@ -70,41 +63,78 @@ public class ImageObject extends AbstractSlideObject {
             this.width = 100; // 默认值
             this.height = 100; // 默认值
             this.aspectRatio = 1.0;
+            System.err.println("ImageObject 构造函数中加载图片失败。");
             throw new IOException("无法从字节数据加载图片。");
         }
     }
 
-    // [!] 核心修改: 从字节数组加载 Image 对象
-    private void loadImageFromData() throws IOException {
-        if (imageData == null || imageData.length == 0) {
-            this.image = null;
-            System.err.println("警告: 图像数据为空，无法加载图片。");
-            return;
+    // ModelCodec 解码用: 图片本身按内容哈希从图片存储中找回，必须已经由调用者放入存储
+    ImageObject(ModelInput in) throws IOException {
+        super(in);
+        String key = in.readString();
+        this.width = in.readVarInt();
+        this.height = in.readVarInt();
+        this.aspectRatio = in.readDouble();
+        this.opacity = in.readFloat();
+
+        ImageBlob existing = key == null ? null : ImageBlobStore.getInstance().acquireExisting(key);
+        if (existing == null) {
+            throw new IOException("图片存储中找不到图片: " + key);
         }
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(imageData)) {
-            this.image = ImageIO.read(bais);
-            if (this.image == null) {
-                System.err.println("错误: ImageIO.read() 返回 null，可能图片格式不受支持或数据损坏。数据长度: " + imageData.length);
-            } else {
-                System.out.println("图片已从字节数据成功加载。宽度: " + this.image.getWidth(null) + ", 高度: " + this.image.getHeight(null));
+        attachBlob(existing); // 像素在第一次绘制时才解码
+    }
+
+    @Override
+    void writeFields(ModelOutput out) {
+        super.writeFields(out);
+        out.writeString(blobKey);
+        out.writeVarInt(width);
+        out.writeVarInt(height);
+        out.writeDouble(aspectRatio);
+        out.writeFloat(opacity);
+    }
+
+    /**
+     * 绑定图片存储中的条目，并登记对象被回收时释放引用计数。
+     * 调用前 blob 必须已经通过 acquire 增加过计数。
+     */
+    private void attachBlob(ImageBlob blob) {
+        this.blob = blob;
+        this.blobKey = blob.getKey();
+        CLEANER.register(this, new BlobRelease(blob.getKey()));
+    }
+
+    // [!] 核心修改: 自定义反序列化方法，按哈希从图片存储中找回共享的图片
+    private void readObject(java.io.ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        ImageBlobStore store = ImageBlobStore.getInstance();
+        if (imageData != null) {
+            // 旧版文件: 图片字节直接嵌在对象里，转存到图片存储中
+            attachBlob(store.acquire(imageData));
+            imageData = null;
+        } else {
+            ImageBlob existing = blobKey == null ? null : store.acquireExisting(blobKey);
+            if (existing == null) {
+                throw new IOException("图片存储中找不到图片: " + blobKey);
             }
-        } catch (IOException e) {
-            System.err.println("严重错误: 从字节数据加载图片时发生 IOException: " + e.getMessage());
-            e.printStackTrace();
-            this.image = null; // 确保在异常时设置为null
-            throw e; // 重新抛出异常，让调用者知道加载失败
+            attachBlob(existing);
         }
     }
 
-    // [!] 核心修改: 自定义反序列化方法，从 imageData 重新加载 Image
-    private void readObject(java.io.ObjectInputStream in) 
-        throws IOException, ClassNotFoundException {
-        in.defaultReadObject(); // 读取非 transient 字段 (imageData)
-        try {
-            loadImageFromData(); // 从已读取的 imageData 重新加载 Image
-        } catch (IOException e) {
-            System.err.println("反序列化时从字节数据加载图片失败: " + e.getMessage());
-            this.image = null;
+    /**
+     * 对象被回收时归还引用计数。不能引用 ImageObject 本身，否则对象永远不会被回收。
+     */
+    private static final class BlobRelease implements Runnable {
+        private final String key;
+
+        BlobRelease(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            ImageBlobStore.getInstance().release(key);
         }
     }
 
@@ -114,41 +144,17 @@ public class ImageObject extends AbstractSlideObject {
                p.y >= this.y && p.y <= (this.y + this.height);
     }
 
+    // 选中时绘制蓝色虚线框和控制点
     @Override
-    public void draw(Graphics g) {
-        // 1. 如果图片加载失败 (image 为 null)，则绘制一个占位符
-        if (image == null) {
-            g.setColor(Color.LIGHT_GRAY);
-            g.fillRect(this.x, this.y, this.width, this.height);
-            g.setColor(Color.RED);
-            g.drawString("图片加载失败", this.x + 10, this.y + this.height / 2);
-            return;
-        }
-
-        // [!] 核心修复: 图片加载成功时，执行实际的绘图逻辑！
-
-        Graphics2D g2d = (Graphics2D) g;
+    public void drawSelection(Graphics2D g2d) {
+        Color originalColor = g2d.getColor();
         Stroke originalStroke = g2d.getStroke();
-        
-        // 2. 应用透明度
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, this.opacity));
-
-        // 3. 绘制图片
-        g2d.drawImage(this.image, this.x, this.y, this.width, this.height, null);
-
-        // 4. 绘制选中框
-        if (this.selected) {
-            g2d.setColor(Color.BLUE);
-            Stroke dashed = new BasicStroke(1.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 10.0f, new float[]{4.0f, 4.0f}, 0.0f);
-            g2d.setStroke(dashed);
-            g2d.drawRect(this.x - 3, this.y - 3, this.width + 6, this.height + 6);
-            g2d.setStroke(originalStroke); // 恢复笔触再画控制点
-            for (Rectangle handle : getResizeHandles().values()) {
-                g2d.fill(handle);
-            }
-        }
-        // 5. 恢复 Graphics2D 的透明度，避免影响后续绘制
-        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1.0f)); 
+        g2d.setColor(Color.BLUE);
+        g2d.setStroke(StrokeCache.SELECTION_OUTLINE_THIN);
+        g2d.drawRect(this.x - 3, this.y - 3, this.width + 6, this.height + 6);
+        g2d.setStroke(originalStroke); // 恢复笔触再画控制点
+        fillResizeHandles(g2d);
+        g2d.setColor(originalColor);
     }
 
     @Override
@@ -156,6 +162,16 @@ public class ImageObject extends AbstractSlideObject {
         return new Rectangle(this.x, this.y, this.width, this.height);
     }
 
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
     @Override
     public void setBounds(Rectangle bounds) {
         this.x = bounds.x;
@@ -184,6 +200,7 @@ public class ImageObject extends AbstractSlideObject {
 
     public double getAspectRation(){ return this.aspectRatio; }
     // public String getImagePath() { return imagePath; }
-    public byte[] getImageData() { return imageData; }
+    public byte[] getImageData() { return blob.getData(); }
+    public ImageBlob getBlob() { return blob; }
 
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package com.myppt.model;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一张解码后图片的多级缩小版本（mipmap）：第 0 级是原图，之后每一级宽高各减半，
+ * 直到小于 MIN_LEVEL_SIZE 为止。
+ * 绘制时选用“不小于目标像素尺寸的最小一级”，这样每次重绘最多只需把图片缩小一半，
+ * 不必每次都从几千像素的原图重新采样。
+ * <p>
+ * 内存不够时缓存可以只保留较小的几级（{@link #trimmedTo(long)}），绘制时用保留下来的最大一级顶替，
+ * 不必立即重新解码整张原图。实例不可变，可以被多个绘制线程同时使用。
+ */
+final class ImagePyramid {
+    private static final int MIN_LEVEL_SIZE = 64;
+
+    private final Image[] levels;
+    private final long bytes;
+    private final boolean complete; // 是否含有原图（第 0 级）
+
+    private ImagePyramid(Image[] levels, long bytes, boolean complete) {
+        this.levels = levels;
+        this.bytes = bytes;
+        this.complete = complete;
+    }
+
+    /**
+     * 由原图逐级缩小生成所有级别（在解码线程上调用）。
+     */
+    static ImagePyramid build(Image original) {
+        List<Image> levels = new ArrayList<>();
+        levels.add(original);
+        long bytes = sizeOf(original);
+
+        int width = original.getWidth(null);
+        int height = original.getHeight(null);
+        boolean opaque = !(original instanceof BufferedImage)
+            || ((BufferedImage) original).getTransparency() == Transparency.OPAQUE;
+        Image previous = original;
+        while (width / 2 >= MIN_LEVEL_SIZE && height / 2 >= MIN_LEVEL_SIZE) {
+            width /= 2;
+            height /= 2;
+            BufferedImage level = new BufferedImage(width, height,
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = level.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(previous, 0, 0, width, height, null);
+            g2d.dispose();
+            levels.add(level);
+            bytes += sizeOf(level);
+            previous = level;
+        }
+        return new ImagePyramid(levels.toArray(new Image[0]), bytes, true);
+    }
+
+    /**
+     * 去掉较大的几级，直到合计不超过 maxBytes；最小的一级总是保留。
+     * @return 不需要去掉任何一级时返回自身
+     */
+    ImagePyramid trimmedTo(long maxBytes) {
+        int first = 0;
+        long remaining = bytes;
+        while (remaining > maxBytes && first < levels.length - 1) {
+            remaining -= sizeOf(levels[first]);
+            first++;
+        }
+        if (first == 0) {
+            return this;
+        }
+        Image[] kept = new Image[levels.length - first];
+        System.arraycopy(levels, first, kept, 0, kept.length);
+        return new ImagePyramid(kept, remaining, false);
+    }
+
+    /**
+     * 是否含有原图。不完整时 {@link #levelFor} 可能返回比需要小的一级。
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 保留下来的最大一级，完整的版本就是原图。
+     */
+    Image original() {
+        return levels[0];
+    }
+
+    /**
+     * 级数多于一级（还可以去掉较大的几级）。
+     */
+    boolean canShrink() {
+        return levels.length > 1;
+    }
+
+    /**
+     * 选择不小于目标像素尺寸的最小一级；目标比保留的最大一级还大时返回最大一级。
+     * @param targetWidth 图片在设备上实际占用的像素宽度
+     * @param targetHeight 图片在设备上实际占用的像素高度
+     */
+    Image levelFor(double targetWidth, double targetHeight) {
+        for (int i = levels.length - 1; i > 0; i--) {
+            Image level = levels[i];
+            if (level.getWidth(null) >= targetWidth && level.getHeight(null) >= targetHeight) {
+                return level;
+            }
+        }
+        return levels[0];
+    }
+
+    /**
+     * 所有级别合计占用的字节数（估算）。
+     */
+    long bytes() {
+        return bytes;
+    }
+
+    private static long sizeOf(Image image) {
+        if (image instanceof BufferedImage) {
+            DataBuffer buffer = ((BufferedImage) image).getRaster().getDataBuffer();
+            return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        }
+        return 4L * Math.max(0, image.getWidth(null)) * Math.max(0, image.getHeight(null));
+    }
+}
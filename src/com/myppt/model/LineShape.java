@@ -1,15 +1,11 @@
 package com.myppt.model;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.Stroke;
 import java.awt.geom.Line2D;
-import java.util.EnumMap;
-import java.util.Map;
+import java.io.IOException;
 
 import com.myppt.controller.strategies.ResizeHandle;
 
@@ -30,6 +26,26 @@ public class LineShape extends AbstractSlideObject {
         this.strokeWidth = width;
     }
 
+    // ModelCodec 解码用
+    LineShape(ModelInput in) throws IOException {
+        super(in);
+        this.x2 = in.readVarInt();
+        this.y2 = in.readVarInt();
+        this.lineColor = in.readColor();
+        this.strokeWidth = in.readFloat();
+        this.borderStyle = in.readVarUInt();
+    }
+
+    @Override
+    void writeFields(ModelOutput out) {
+        super.writeFields(out);
+        out.writeVarInt(x2);
+        out.writeVarInt(y2);
+        out.writeColor(lineColor);
+        out.writeFloat(strokeWidth);
+        out.writeVarUInt(borderStyle);
+    }
+
     @Override
     public void setX(int x1) {
         int dx = x1 - this.x;
@@ -54,42 +70,13 @@ public class LineShape extends AbstractSlideObject {
         return distance < 8;
     }
 
+    // 选中时只画两个端点上的控制点
     @Override
-    public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g;
-        
+    public void drawSelection(Graphics2D g2d) {
         Color originalColor = g2d.getColor();
-        Stroke originalStroke = g2d.getStroke();
-
-        g2d.setColor(this.lineColor);
-
-        float width = this.strokeWidth;
-        Stroke lineStroke;
-        switch (borderStyle) {
-            case AbstractSlideObject.BORDER_STYLE_DASHED:
-                lineStroke = new BasicStroke(width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, new float[]{10.0f, 5.0f}, 0.0f);
-                break;
-            case AbstractSlideObject.BORDER_STYLE_DOTTED:
-                lineStroke = new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 10.0f, new float[]{width, width * 2}, 0.0f);
-                break;
-            case AbstractSlideObject.BORDER_STYLE_SOLID:
-            default:
-                lineStroke = new BasicStroke(width);
-                break;
-        }
-
-        // [FIX] 使用上面 switch 语句中创建的 lineStroke，而不是创建一个新的
-        g2d.setStroke(lineStroke);
-        g2d.drawLine(this.x, this.y, this.x2, this.y2);
-
-        if (this.selected) {
-            g2d.setColor(Color.BLUE);
-            g2d.fillRect(this.x - 4, this.y - 4, 8, 8);
-            g2d.fillRect(this.x2 - 4, this.y2 - 4, 8, 8);
-        }
-
+        g2d.setColor(Color.BLUE);
+        fillResizeHandles(g2d);
         g2d.setColor(originalColor);
-        g2d.setStroke(originalStroke);
     }
 
     public Color getLineColor() {
@@ -110,12 +97,25 @@ public class LineShape extends AbstractSlideObject {
         // Not implemented for lines
     }
 
+    // 直线只有两个控制点：起点 (TOP_LEFT) 和终点 (BOTTOM_RIGHT)
+    @Override
+    protected int getHandleCount() {
+        return 2;
+    }
+
+    @Override
+    protected ResizeHandle getHandleType(int index) {
+        return index == 0 ? ResizeHandle.TOP_LEFT : ResizeHandle.BOTTOM_RIGHT;
+    }
+
     @Override
-    public Map<ResizeHandle, Rectangle> getResizeHandles() {
-        EnumMap<ResizeHandle, Rectangle> handles = new EnumMap<>(ResizeHandle.class);
-        handles.put(ResizeHandle.TOP_LEFT, new Rectangle(x - HANDLE_SIZE / 2, y - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        handles.put(ResizeHandle.BOTTOM_RIGHT, new Rectangle(x2 - HANDLE_SIZE / 2, y2 - HANDLE_SIZE / 2, HANDLE_SIZE, HANDLE_SIZE));
-        return handles;
+    protected int getHandleCenterX(int index) {
+        return index == 0 ? this.x : this.x2;
+    }
+
+    @Override
+    protected int getHandleCenterY(int index) {
+        return index == 0 ? this.y : this.y2;
     }
 
     @Override
@@ -140,6 +140,11 @@ public class LineShape extends AbstractSlideObject {
         return this.strokeWidth;
     }
 
+    @Override
+    protected double getStrokeOverhang() {
+        return strokeWidth; // 线帽和斜线两侧都按整个线宽留余量
+    }
+
     public int getBorderStyle() { return borderStyle; }
     public void setBorderStyle(int borderStyle) { this.borderStyle = borderStyle; }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.myppt.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 幻灯片对象的二进制编码，替代默认的 Java 序列化。
+ * <p>
+ * 编码格式：魔数 1 字节 | 格式版本 | 对象个数 | 每个对象的 类型 1 字节 + 字段。
+ * 各对象类自己负责读写自己的字段（writeFields 和以 ModelInput 为参数的构造方法），
+ * 父类字段在前、子类字段在后。不写类描述、不写 UUID（对象 ID 只在本次运行中使用，读入时重新生成），
+ * 字符串、颜色、字体在一次编码中只写一次。
+ * <p>
+ * 用于分块文件中的页面记录、自动保存日志以及 deepCopy。
+ */
+public final class ModelCodec {
+    private static final int MAGIC = 0x4D; // 'M'，Java 序列化的数据以 0xAC 开头，两者不会混淆
+    private static final int VERSION = 1;
+
+    private static final int TYPE_RECTANGLE = 1;
+    private static final int TYPE_ELLIPSE = 2;
+    private static final int TYPE_LINE = 3;
+    private static final int TYPE_TEXT = 4;
+    private static final int TYPE_IMAGE = 5;
+
+    private ModelCodec() {}
+
+    /**
+     * 判断一段数据是否是本编码格式（而不是旧的 Java 序列化数据）。
+     */
+    public static boolean isEncoded(byte[] data) {
+        return data.length > 0 && (data[0] & 0xFF) == MAGIC;
+    }
+
+    /**
+     * 编码一组对象（按图层顺序）。
+     */
+    public static byte[] encode(List<AbstractSlideObject> objects) {
+        ModelOutput out = new ModelOutput(32 + objects.size() * 48);
+        out.writeByte(MAGIC);
+        out.writeVarUInt(VERSION);
+        out.writeVarUInt(objects.size());
+        for (AbstractSlideObject object : objects) {
+            out.writeByte(typeOf(object));
+            object.writeFields(out);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码由 {@link #encode(List)} 得到的数据。
+     * @throws IOException 数据损坏或版本过新时抛出
+     */
+    public static List<AbstractSlideObject> decode(byte[] data) throws IOException {
+        ModelInput in = new ModelInput(data, 0);
+        if (in.readByte() != MAGIC) {
+            throw new IOException("无法识别的页面数据");
+        }
+        int version = in.readVarUInt();
+        if (version > VERSION) {
+            throw new IOException("页面数据版本过新 (" + version + ")，请升级程序。");
+        }
+        int count = in.readVarUInt();
+        List<AbstractSlideObject> objects = new ArrayList<>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++) {
+            objects.add(readObject(in));
+        }
+        return objects;
+    }
+
+    /**
+     * 通过编码再解码复制一个对象，副本拥有新的 ID。
+     */
+    public static AbstractSlideObject copy(AbstractSlideObject object) throws IOException {
+        List<AbstractSlideObject> single = new ArrayList<>(1);
+        single.add(object);
+        return decode(encode(single)).get(0);
+    }
+
+    private static int typeOf(AbstractSlideObject object) {
+        if (object instanceof RectangleShape) return TYPE_RECTANGLE;
+        if (object instanceof EllipseShape) return TYPE_ELLIPSE;
+        if (object instanceof LineShape) return TYPE_LINE;
+        if (object instanceof TextBox) return TYPE_TEXT;
+        if (object instanceof ImageObject) return TYPE_IMAGE;
+        throw new IllegalArgumentException("不支持编码的对象类型: " + object.getClass().getName());
+    }
+
+    private static AbstractSlideObject readObject(ModelInput in) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+            case TYPE_RECTANGLE: return new RectangleShape(in);
+            case TYPE_ELLIPSE:   return new EllipseShape(in);
+            case TYPE_LINE:      return new LineShape(in);
+            case TYPE_TEXT:      return new TextBox(in);
+            case TYPE_IMAGE:     return new ImageObject(in);
+            default:
+                throw new IOException("未知的对象类型: " + type);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.myppt.model;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ModelCodec 的输入，与 {@link ModelOutput} 的写法一一对应。
+ */
+final class ModelInput {
+    private final byte[] buf;
+    private int pos;
+
+    private final List<String> strings = new ArrayList<>();
+    private final List<Color> colors = new ArrayList<>();
+    private final List<Font> fonts = new ArrayList<>();
+
+    ModelInput(byte[] buf, int offset) {
+        this.buf = buf;
+        this.pos = offset;
+    }
+
+    private void require(int n) throws IOException {
+        if (pos + n > buf.length) {
+            throw new EOFException("页面数据意外结束");
+        }
+    }
+
+    int readByte() throws IOException {
+        require(1);
+        return buf[pos++] & 0xFF;
+    }
+
+    int readVarUInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+
+    int readVarInt() throws IOException {
+        int v = readVarUInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    int readInt() throws IOException {
+        require(4);
+        int v = ((buf[pos] & 0xFF) << 24) | ((buf[pos + 1] & 0xFF) << 16)
+              | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+        pos += 4;
+        return v;
+    }
+
+    float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    double readDouble() throws IOException {
+        long high = readInt() & 0xFFFFFFFFL;
+        long low = readInt() & 0xFFFFFFFFL;
+        return Double.longBitsToDouble((high << 32) | low);
+    }
+
+    boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    String readString() throws IOException {
+        int ref = readRef(strings);
+        if (ref <= 0) {
+            return ref == 0 ? null : strings.get(-ref - 1);
+        }
+        int length = readVarUInt();
+        require(length);
+        String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        strings.add(s);
+        return s;
+    }
+
+    Color readColor() throws IOException {
+        int ref = readRef(colors);
+        if (ref <= 0) {
+            return ref == 0 ? null : colors.get(-ref - 1);
+        }
+        Color c = new Color(readInt(), true);
+        colors.add(c);
+        return c;
+    }
+
+    Font readFont() throws IOException {
+        int ref = readRef(fonts);
+        if (ref <= 0) {
+            return ref == 0 ? null : fonts.get(-ref - 1);
+        }
+        String name = readString();
+        int style = readVarUInt();
+        float size = readFloat();
+        Font f = size == (int) size ? new Font(name, style, (int) size) : new Font(name, style, 1).deriveFont(size);
+        fonts.add(f);
+        return f;
+    }
+
+    /**
+     * 读取表引用。返回 0 表示 null，负数 -(i+1) 表示表中第 i 个已有值，1 表示紧接着是一个新值。
+     */
+    private int readRef(List<?> table) throws IOException {
+        int ref = readVarUInt();
+        if (ref == 0) return 0;
+        if (ref <= table.size()) return -ref;
+        if (ref == table.size() + 1) return 1;
+        throw new IOException("页面数据中的引用无效: " + ref);
+    }
+}
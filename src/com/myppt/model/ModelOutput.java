@@ -0,0 +1,126 @@
+package com.myppt.model;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ModelCodec 的输出缓冲区。
+ * 整数使用变长编码（小数字只占 1 字节），字符串、颜色、字体在一次编码中第一次出现时写出完整值，
+ * 之后只写它在表中的序号（见 {@link #writeRef}）。
+ */
+final class ModelOutput {
+    private byte[] buf;
+    private int pos;
+
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final Map<Color, Integer> colors = new HashMap<>();
+    private final Map<Font, Integer> fonts = new HashMap<>();
+
+    ModelOutput(int initialCapacity) {
+        this.buf = new byte[Math.max(16, initialCapacity)];
+    }
+
+    private void ensure(int n) {
+        if (pos + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+        }
+    }
+
+    void writeByte(int b) {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    /**
+     * 无符号变长整数，每字节 7 位。
+     */
+    void writeVarUInt(int v) {
+        ensure(5);
+        while ((v & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+    }
+
+    /**
+     * 有符号变长整数（ZigZag），坐标等可能为负的值使用它。
+     */
+    void writeVarInt(int v) {
+        writeVarUInt((v << 1) ^ (v >> 31));
+    }
+
+    void writeInt(int v) {
+        ensure(4);
+        buf[pos++] = (byte) (v >>> 24);
+        buf[pos++] = (byte) (v >>> 16);
+        buf[pos++] = (byte) (v >>> 8);
+        buf[pos++] = (byte) v;
+    }
+
+    void writeFloat(float v) {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    void writeDouble(double v) {
+        long bits = Double.doubleToLongBits(v);
+        writeInt((int) (bits >>> 32));
+        writeInt((int) bits);
+    }
+
+    void writeBoolean(boolean v) {
+        writeByte(v ? 1 : 0);
+    }
+
+    void writeString(String s) {
+        if (writeRef(strings, s)) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarUInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+    }
+
+    void writeColor(Color c) {
+        if (writeRef(colors, c)) {
+            writeInt(c.getRGB()); // ARGB
+        }
+    }
+
+    void writeFont(Font f) {
+        if (writeRef(fonts, f)) {
+            writeString(f.getName());
+            writeVarUInt(f.getStyle());
+            writeFloat(f.getSize2D());
+        }
+    }
+
+    /**
+     * 写出值在表中的引用：0 表示 null，1..n 表示已出现过的第 n 个值，n+1 表示新值（随后写出完整内容）。
+     * @return 需要调用者接着写出完整值时返回 true
+     */
+    private <T> boolean writeRef(Map<T, Integer> table, T value) {
+        if (value == null) {
+            writeVarUInt(0);
+            return false;
+        }
+        Integer ref = table.get(value);
+        if (ref != null) {
+            writeVarUInt(ref);
+            return false;
+        }
+        int next = table.size() + 1;
+        table.put(value, next);
+        writeVarUInt(next);
+        return true;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, pos);
+    }
+}
@@ -21,6 +21,19 @@ public class Presentation implements Serializable {
         this.currentSlideIndex = 0;   // 默认选中第一个页面
     }
 
+    /**
+     * 用已有的页面列表创建演示文稿（例如从文件中读取后）。
+     * @param slides 页面列表，可以包含尚未加载的页面
+     * @param currentSlideIndex 当前选中的页面索引
+     */
+    public Presentation(List<Slide> slides, int currentSlideIndex) {
+        this.slides = new ArrayList<>(slides);
+        if (this.slides.isEmpty()) {
+            this.slides.add(new Slide());
+        }
+        this.currentSlideIndex = Math.max(0, Math.min(currentSlideIndex, this.slides.size() - 1));
+    }
+
     public List<Slide> getSlides() {
         return slides;
     }
@@ -50,6 +63,30 @@ public class Presentation implements Serializable {
         }
     }
 
+    /**
+     * 查找对象所在的页面。只在已加载的页面中查找（对象只可能存在于已加载的页面上）。
+     * @return 对象所在的页面；找不到时返回 null
+     */
+    public Slide findSlideOf(AbstractSlideObject object) {
+        for (Slide slide : slides) {
+            if (slide.isLoaded() && slide.getSlideObjects().contains(object)) {
+                return slide;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 强制加载所有尚未加载的页面，并解除它们与来源文件的关联（下次保存时全部重新写出）。
+     * 在页面的来源文件即将被删除时（例如自动恢复后）调用。
+     */
+    public void loadAllSlides() {
+        for (Slide slide : slides) {
+            slide.getSlideObjects();
+            slide.markPersisted(null, slide.getVersion());
+        }
+    }
+
     // [!] 新增: 删除当前页面的方法
     public void removeCurrentSlide() {
         if (slides.size() > 1) { // 保证至少留有一页
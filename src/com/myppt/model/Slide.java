@@ -1,5 +1,8 @@
 package com.myppt.model;
 
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -7,45 +10,190 @@ import java.util.List;
 /**
  * 表示单个幻灯片页面。
  * 它包含了页面上所有的元素对象。
+ * 从分块格式文件打开时，页面内容由 SlideLoader 在第一次访问时才加载。
  */
 public class Slide implements Serializable {
     private static final long serialVersionUID = 1L;
-    
+
     public static final int PAGE_WIDTH = 1280; // 页面宽度
     public static final int PAGE_HEIGHT = 720; // 页面高度
-    
+
     // 这就是我们的核心：一个可以容纳页面上所有元素的“万能”列表
+    // 延迟加载的页面在首次访问前为 null
     private List<AbstractSlideObject> slideObjects;
 
+    // 页面内容在文件中的来源（记录）。未加载的页面靠它加载；已加载的页面靠它判断是否需要重新写出
+    private transient SlideLoader source;
+    // 内容版本号，每次修改页面内容时递增
+    private transient long version;
+    // source 所对应的内容版本号，与 version 相等说明文件中的记录仍是最新的
+    private transient long sourceVersion;
+    // 页面内容读取失败时的错误。此时页面以空白显示，但 source 保留原记录，保存时原样写回（见 getPersistedSource）
+    private transient IOException loadError;
+    // 对象的空间索引，绘制时按需建立；对象增删、换层或被修改后置为 null（只在事件分发线程上使用）
+    private transient SpatialGrid spatialIndex;
+
     public Slide() {
         this.slideObjects = new ArrayList<>();
     }
 
+    /**
+     * 创建一个延迟加载的页面，内容在第一次访问时由 loader 读取。
+     * @param loader 页面内容的加载器
+     */
+    public Slide(SlideLoader loader) {
+        this.source = loader;
+    }
+
+    /**
+     * 确保页面内容已经加载到内存中。
+     * 所有访问 slideObjects 的方法都必须先调用它。
+     */
+    private synchronized void ensureLoaded() {
+        if (slideObjects != null) return;
+        try {
+            slideObjects = new ArrayList<>(source.load());
+        } catch (IOException e) {
+            System.err.println("加载幻灯片页面失败: " + e.getMessage());
+            e.printStackTrace();
+            // 用空白页面代替显示，但不丢掉原记录：保存时照原样复制，不会用空白页覆盖用户的内容
+            slideObjects = new ArrayList<>();
+            loadError = e;
+        }
+    }
+
+    /**
+     * 页面内容读取失败时返回当时的错误，否则返回 null。
+     * 读取失败的页面是只读的：对它的修改不会被保存，文件中的原记录保持不变。
+     */
+    public synchronized IOException getLoadError() {
+        return loadError;
+    }
+
+    /**
+     * 页面内容是否已经在内存中。
+     */
+    public synchronized boolean isLoaded() {
+        return slideObjects != null;
+    }
+
+    /**
+     * 标记页面内容已被修改。由执行命令（以及不经过命令的实时编辑）时调用。
+     */
+    public synchronized void touch() {
+        version++;
+        spatialIndex = null;
+    }
+
+    /**
+     * 当前内容版本号。
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * 如果页面自上次加载/保存以来没有被修改，返回它在文件中的记录；否则返回 null。
+     * 保存文件时据此直接复用未修改页面的记录，而无需重新序列化。
+     * 读取失败的页面无论是否被修改都返回原记录。
+     */
+    public synchronized SlideLoader getPersistedSource() {
+        if (loadError != null) {
+            return source; // 读取失败的页面始终沿用原记录
+        }
+        return version == sourceVersion ? source : null;
+    }
+
+    /**
+     * 记录页面的某个版本已经写入文件中的 source 记录。
+     * 保存开始后页面又被修改时，version 会大于 savedVersion，页面仍被视为已修改。
+     * @param source 新写入（或重新定位）的记录
+     * @param savedVersion 写入文件的内容对应的版本号
+     */
+    public synchronized void markPersisted(SlideLoader source, long savedVersion) {
+        this.source = source;
+        this.sourceVersion = savedVersion;
+    }
+
+    /**
+     * 从文件中的记录另外读取一份页面内容，不放入页面，也不改变页面的加载状态。
+     * 供后台线程使用（例如绘制缩略图）：返回的对象与编辑中的页面不共享状态，读取时也不持有页面的锁。
+     * @throws IOException 读取失败，或页面没有文件中的记录（新建的页面）时抛出
+     */
+    public List<AbstractSlideObject> loadDetached() throws IOException {
+        SlideLoader loader;
+        synchronized (this) {
+            loader = source;
+        }
+        if (loader == null) {
+            throw new IOException("页面没有文件中的记录");
+        }
+        return loader.load();
+    }
+
     public List<AbstractSlideObject> getSlideObjects() {
+        ensureLoaded();
         return slideObjects;
     }
 
     public void addObject(AbstractSlideObject object) {
-        this.slideObjects.add(object);
+        getSlideObjects().add(object);
+        spatialIndex = null;
+    }
+
+    /**
+     * 在指定的图层位置插入对象（撤销删除时恢复原来的位置）。
+     */
+    public void addObject(int index, AbstractSlideObject object) {
+        getSlideObjects().add(index, object);
+        spatialIndex = null;
     }
-    
+
     public void removeObject(AbstractSlideObject object) {
-        this.slideObjects.remove(object);
+        getSlideObjects().remove(object);
+        spatialIndex = null;
+    }
+
+    /**
+     * 返回绘制区域与 region（页面坐标）相交的对象，按图层顺序从底到顶。
+     * 通过空间索引只检查 region 附近的对象，索引在第一次查询时建立。
+     */
+    public List<AbstractSlideObject> getObjectsIn(Rectangle region) {
+        List<AbstractSlideObject> objects = getSlideObjects();
+        if (spatialIndex == null || spatialIndex.size() != objects.size()) {
+            spatialIndex = new SpatialGrid(objects);
+        }
+        return spatialIndex.query(region);
+    }
+
+    /**
+     * 对象的位置或大小在命令之外被直接修改（例如拖动过程中）后调用，使空间索引保持同步。
+     */
+    public void objectBoundsChanged(AbstractSlideObject object) {
+        if (spatialIndex != null && !spatialIndex.update(object)) {
+            spatialIndex = null;
+        }
     }
 
     public void bringToFront(AbstractSlideObject object) {
+        spatialIndex = null;
+        List<AbstractSlideObject> slideObjects = getSlideObjects();
         if (slideObjects.remove(object)) {
             slideObjects.add(object); // 移动到列表末尾
         }
     }
 
     public void sendToBack(AbstractSlideObject object) {
+        spatialIndex = null;
+        List<AbstractSlideObject> slideObjects = getSlideObjects();
         if (slideObjects.remove(object)) {
             slideObjects.add(0, object); // 移动到列表开头
         }
     }
-    
+
     public void bringForward(AbstractSlideObject object) {
+        spatialIndex = null;
+        List<AbstractSlideObject> slideObjects = getSlideObjects();
         int currentIndex = slideObjects.indexOf(object);
         if (currentIndex < slideObjects.size() - 1) { // 确保不是最顶层
             // 先移除，再插入到下一个位置
@@ -55,6 +203,8 @@ public class Slide implements Serializable {
     }
 
     public void sendBackward(AbstractSlideObject object) {
+        spatialIndex = null;
+        List<AbstractSlideObject> slideObjects = getSlideObjects();
         int currentIndex = slideObjects.indexOf(object);
         if (currentIndex > 0) { // 确保不是最底层
             // 先移除，再插入到前一个位置
@@ -64,9 +214,16 @@ public class Slide implements Serializable {
     }
 
     // 设置对象列表的方法
-    public void setSlideObjects(java.util.List<AbstractSlideObject> objects) {
+    public synchronized void setSlideObjects(java.util.List<AbstractSlideObject> objects) {
         // 创建一个副本以保证封装性
         this.slideObjects = new java.util.ArrayList<>(objects);
+        this.spatialIndex = null;
+    }
+
+    // 旧格式（整体 Java 序列化）保存时，必须先把延迟加载的内容读进来
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ensureLoaded();
+        out.defaultWriteObject();
     }
-    
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,18 @@
+package com.myppt.model;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 幻灯片内容的延迟加载器。
+ * 打开分块格式的 .myppt 文件时，每个 Slide 只持有一个加载器，
+ * 直到第一次访问页面内容时才真正从文件中读取并反序列化该页的对象。
+ */
+public interface SlideLoader {
+    /**
+     * 读取并返回该页面上的所有对象（按图层顺序）。
+     * @return 页面对象列表
+     * @throws IOException 读取或解析失败时抛出
+     */
+    List<AbstractSlideObject> load() throws IOException;
+}
@@ -0,0 +1,151 @@
+package com.myppt.model;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一页上对象的均匀网格空间索引，按对象的绘制区域（getPaintBounds）登记到它覆盖的格子中。
+ * <p>
+ * 网格只覆盖建立索引时所有对象的范围；之后移出这个范围的对象被归入最外圈的格子，
+ * 查询同样把坐标夹到网格内，所以结果始终正确，只是外圈的格子可能多一些候选。
+ * 候选对象最后再用真实的绘制区域精确判断一次，结果按图层顺序（从底到顶）返回。
+ * <p>
+ * 索引只在事件分发线程上使用，由 Slide 负责在对象增删、换层、修改后失效或更新。
+ */
+final class SpatialGrid {
+    private static final int CELL_SIZE = 128; // 页面坐标中一个格子的边长
+
+    private final AbstractSlideObject[] objects;             // 建立索引时的对象，下标即图层顺序
+    private final Map<AbstractSlideObject, Integer> indexOf; // 对象 -> 下标
+    private final int[][] cellRanges;                        // 每个对象登记的格子范围 {col0, row0, col1, row1}
+    private final int originX;
+    private final int originY;
+    private final int cols;
+    private final int rows;
+    private final int[][] cells;     // 每个格子中的对象下标
+    private final int[] cellCounts;
+
+    SpatialGrid(List<AbstractSlideObject> list) {
+        this.objects = list.toArray(new AbstractSlideObject[0]);
+        this.indexOf = new IdentityHashMap<>(objects.length * 2);
+        this.cellRanges = new int[objects.length][];
+
+        Rectangle extent = new Rectangle(0, 0, Slide.PAGE_WIDTH, Slide.PAGE_HEIGHT);
+        Rectangle[] bounds = new Rectangle[objects.length];
+        for (int i = 0; i < objects.length; i++) {
+            bounds[i] = objects[i].getPaintBounds();
+            extent.add(bounds[i]);
+        }
+        this.originX = extent.x;
+        this.originY = extent.y;
+        this.cols = Math.max(1, (extent.width + CELL_SIZE - 1) / CELL_SIZE);
+        this.rows = Math.max(1, (extent.height + CELL_SIZE - 1) / CELL_SIZE);
+        this.cells = new int[cols * rows][];
+        this.cellCounts = new int[cols * rows];
+
+        for (int i = 0; i < objects.length; i++) {
+            indexOf.put(objects[i], i);
+            insert(i, bounds[i]);
+        }
+    }
+
+    /**
+     * 建立索引时的对象个数。与页面当前的对象个数不同说明列表被直接修改过，需要重建。
+     */
+    int size() {
+        return objects.length;
+    }
+
+    /**
+     * 对象的位置或大小变了，把它移到新的格子中。对象不在索引中时返回 false。
+     */
+    boolean update(AbstractSlideObject object) {
+        Integer index = indexOf.get(object);
+        if (index == null) {
+            return false;
+        }
+        int[] old = cellRanges[index];
+        for (int row = old[1]; row <= old[3]; row++) {
+            for (int col = old[0]; col <= old[2]; col++) {
+                removeFromCell(row * cols + col, index);
+            }
+        }
+        insert(index, object.getPaintBounds());
+        return true;
+    }
+
+    /**
+     * 返回绘制区域与 region 相交的对象，按图层顺序（从底到顶）。
+     */
+    List<AbstractSlideObject> query(Rectangle region) {
+        int col0 = col(region.x);
+        int row0 = row(region.y);
+        int col1 = col(region.x + region.width);
+        int row1 = row(region.y + region.height);
+
+        BitSet candidates = new BitSet(objects.length);
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                int cell = row * cols + col;
+                int[] members = cells[cell];
+                for (int k = 0; k < cellCounts[cell]; k++) {
+                    candidates.set(members[k]);
+                }
+            }
+        }
+
+        List<AbstractSlideObject> result = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (objects[i].getPaintBounds().intersects(region)) {
+                result.add(objects[i]);
+            }
+        }
+        return result;
+    }
+
+    private void insert(int index, Rectangle bounds) {
+        int[] range = {col(bounds.x), row(bounds.y), col(bounds.x + bounds.width), row(bounds.y + bounds.height)};
+        cellRanges[index] = range;
+        for (int row = range[1]; row <= range[3]; row++) {
+            for (int col = range[0]; col <= range[2]; col++) {
+                addToCell(row * cols + col, index);
+            }
+        }
+    }
+
+    private void addToCell(int cell, int index) {
+        int[] members = cells[cell];
+        if (members == null) {
+            members = cells[cell] = new int[4];
+        } else if (cellCounts[cell] == members.length) {
+            members = cells[cell] = Arrays.copyOf(members, members.length * 2);
+        }
+        members[cellCounts[cell]++] = index;
+    }
+
+    private void removeFromCell(int cell, int index) {
+        int[] members = cells[cell];
+        int count = cellCounts[cell];
+        for (int k = 0; k < count; k++) {
+            if (members[k] == index) {
+                members[k] = members[count - 1];
+                cellCounts[cell] = count - 1;
+                return;
+            }
+        }
+    }
+
+    // 坐标所在的列/行，超出网格的坐标归入最外圈
+    private int col(int x) {
+        return Math.max(0, Math.min(cols - 1, Math.floorDiv(x - originX, CELL_SIZE)));
+    }
+
+    private int row(int y) {
+        return Math.max(0, Math.min(rows - 1, Math.floorDiv(y - originY, CELL_SIZE)));
+    }
+}
@@ -0,0 +1,87 @@
+package com.myppt.model;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 绘制用的笔触和透明度合成规则的共享实例（享元）。
+ * <p>
+ * BasicStroke 和 AlphaComposite 都是不可变对象，同样的宽度、线型、透明度只需创建一次，
+ * 显示列表的绘制指令和选中框都从这里取用，反复重绘时不再产生新的对象。
+ * 常见的边框宽度（0.25 的整数倍，100 像素以内）直接按下标存放在数组中，查找不分配内存；
+ * 其他宽度放在一个并发的散列表中。透明度按 1/255 量化，与像素本身的 8 位 alpha 精度相同。
+ * 缩略图在工作线程上绘制，所以这里的方法都是线程安全的。显示列表（view.render）编译时也从这里取笔触。
+ */
+public final class StrokeCache {
+    /** 矩形的选中框：2 像素，10 实 5 空 */
+    public static final BasicStroke SELECTION_OUTLINE =
+        new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{10, 5}, 0);
+    /** 椭圆、文本框、图片的选中框：1 像素，4 实 4 空 */
+    public static final BasicStroke SELECTION_OUTLINE_THIN =
+        new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{4, 4}, 0);
+
+    private static final int STEPS_PER_PIXEL = 4;
+    private static final int MAX_INDEXED_WIDTH = 100;
+    private static final int STYLES = 3; // BORDER_STYLE_SOLID / DASHED / DOTTED
+
+    private static final AtomicReferenceArray<BasicStroke> indexedStrokes =
+        new AtomicReferenceArray<>(STYLES * (MAX_INDEXED_WIDTH * STEPS_PER_PIXEL + 1));
+    private static final Map<Long, BasicStroke> otherStrokes = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<AlphaComposite> composites = new AtomicReferenceArray<>(256);
+
+    private StrokeCache() {
+    }
+
+    /**
+     * 指定宽度和线型（AbstractSlideObject.BORDER_STYLE_*）的边框笔触。
+     */
+    public static BasicStroke border(float width, int style) {
+        if (style < 0 || style >= STYLES) {
+            style = AbstractSlideObject.BORDER_STYLE_SOLID;
+        }
+        float steps = width * STEPS_PER_PIXEL;
+        int step = (int) steps;
+        if (step == steps && step >= 0 && step <= MAX_INDEXED_WIDTH * STEPS_PER_PIXEL) {
+            int index = style * (MAX_INDEXED_WIDTH * STEPS_PER_PIXEL + 1) + step;
+            BasicStroke stroke = indexedStrokes.get(index);
+            if (stroke == null) {
+                stroke = createBorder(width, style);
+                indexedStrokes.set(index, stroke); // 并发时可能重复创建，结果相同，无害
+            }
+            return stroke;
+        }
+        long key = ((long) Float.floatToIntBits(width) << 2) | style;
+        final int s = style;
+        return otherStrokes.computeIfAbsent(key, k -> createBorder(width, s));
+    }
+
+    /**
+     * 按不透明度叠加（SRC_OVER）的合成规则。
+     */
+    public static AlphaComposite opacity(float alpha) {
+        int level = Math.round(Math.max(0f, Math.min(1f, alpha)) * 255);
+        AlphaComposite composite = composites.get(level);
+        if (composite == null) {
+            composite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, level / 255f);
+            composites.set(level, composite);
+        }
+        return composite;
+    }
+
+    private static BasicStroke createBorder(float width, int style) {
+        switch (style) {
+            case AbstractSlideObject.BORDER_STYLE_DASHED:
+                // 虚线: 10像素实，5像素空
+                return new BasicStroke(width, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, new float[]{10.0f, 5.0f}, 0.0f);
+            case AbstractSlideObject.BORDER_STYLE_DOTTED:
+                // 点线: 宽度本身是点，两倍宽度是空
+                return new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND, 10.0f, new float[]{width, width * 2}, 0.0f);
+            case AbstractSlideObject.BORDER_STYLE_SOLID:
+            default:
+                return new BasicStroke(width);
+        }
+    }
+}
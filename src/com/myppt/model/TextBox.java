@@ -1,15 +1,19 @@
 package com.myppt.model;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontMetrics;
-import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Stroke;
-import javax.swing.JPanel;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.myppt.utils.FontMetricsCache;
+import com.myppt.utils.TextWrapper;
 
 public class TextBox extends AbstractSlideObject {
     private static final long serialVersionUID = 1L;
@@ -21,6 +25,10 @@ public class TextBox extends AbstractSlideObject {
     private int width;
     private int height;
 
+    // 换行结果的缓存（不保存到文件）。只有 setText、setFont、setBounds 会让它失效，
+    // 移动文本框或改颜色不需要重新排版。
+    private transient LineLayout layout;
+
     public TextBox(int x, int y, String text, Font font, Color color) {
         super(x, y);
         this.text = text;
@@ -31,8 +39,29 @@ public class TextBox extends AbstractSlideObject {
         calculateNaturalBounds();
     }
 
+    // ModelCodec 解码用: 直接恢复保存时的宽高，不需要重新测量文字
+    TextBox(ModelInput in) throws IOException {
+        super(in);
+        this.text = in.readString();
+        this.font = in.readFont();
+        this.textColor = in.readColor();
+        this.width = in.readVarInt();
+        this.height = in.readVarInt();
+    }
+
+    @Override
+    void writeFields(ModelOutput out) {
+        super.writeFields(out);
+        out.writeString(text);
+        out.writeFont(font);
+        out.writeColor(textColor);
+        out.writeVarInt(width);
+        out.writeVarInt(height);
+    }
+
     public void setText(String text) {
         this.text = text;
+        this.layout = null;
         // 文本内容改变时，重新计算自然边界
         calculateNaturalBounds();
     }
@@ -42,8 +71,7 @@ public class TextBox extends AbstractSlideObject {
      * 这个方法在创建或文本内容更新时调用。
      */
     private void calculateNaturalBounds() {
-        JPanel tempPanel = new JPanel();
-        FontMetrics fm = tempPanel.getFontMetrics(this.font);
+        FontMetrics fm = FontMetricsCache.getInstance().get(this.font);
         
         String[] lines = this.text.split("\n");
         int maxWidth = 0;
@@ -65,33 +93,8 @@ public class TextBox extends AbstractSlideObject {
      * 这个方法在缩放时(setBounds)调用。
      */
     private void updateHeightForWidth(int targetWidth) {
-        JPanel tempPanel = new JPanel();
-        FontMetrics fm = tempPanel.getFontMetrics(this.font);
-        int lineHeight = fm.getHeight();
-
-        java.util.List<String> linesToDraw = new java.util.ArrayList<>();
-        String[] paragraphs = this.text.split("\n", -1);
-
-        for (String paragraph : paragraphs) {
-            if (paragraph.isEmpty()) {
-                linesToDraw.add("");
-                continue;
-            }
-            StringBuilder currentLine = new StringBuilder();
-            for (int i = 0; i < paragraph.length(); i++) {
-                char ch = paragraph.charAt(i);
-                if (fm.stringWidth(currentLine.toString() + ch) > targetWidth && currentLine.length() > 0) {
-                    linesToDraw.add(currentLine.toString());
-                    currentLine = new StringBuilder();
-                    currentLine.append(ch);
-                } else {
-                    currentLine.append(ch);
-                }
-            }
-            linesToDraw.add(currentLine.toString());
-        }
-        
-        this.height = Math.max(lineHeight, linesToDraw.size() * lineHeight);
+        this.width = targetWidth;
+        this.height = getLayout().height;
     }
     
     // --- Getters and Setters ---
@@ -121,83 +124,105 @@ public class TextBox extends AbstractSlideObject {
         return new Rectangle(this.x, this.y, this.width, this.height);
     }
 
+    @Override
+    public int getWidth() {
+        return this.width;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
     @Override
     public void setBounds(Rectangle bounds) {
         this.x = bounds.x;
         this.y = bounds.y;
         this.width = bounds.width;
+        this.layout = null;
         
         // 宽度改变后，立即根据新宽度重新计算所需的高度
         updateHeightForWidth(this.width);
     }
 
+    // 选中效果: 虚线框 + 控制点
     @Override
-    public void draw(Graphics g) {
-        Graphics2D g2d = (Graphics2D) g;
-        
+    public void drawSelection(Graphics2D g2d) {
         Color originalColor = g2d.getColor();
-        Font originalFont = g2d.getFont();
         Stroke originalStroke = g2d.getStroke();
+        g2d.setColor(Color.LIGHT_GRAY);
+        g2d.setStroke(StrokeCache.SELECTION_OUTLINE_THIN);
+        g2d.drawRect(this.x - 3, this.y - 3, this.width + 6, this.height + 6);
+        g2d.setColor(Color.BLUE);
+        fillResizeHandles(g2d);
+        g2d.setColor(originalColor);
+        g2d.setStroke(originalStroke);
+    }
 
-        g2d.setFont(this.font);
-        g2d.setColor(this.textColor);
-        
-        FontMetrics fm = g2d.getFontMetrics(this.font);
-        int lineHeight = fm.getHeight();
-        int textAscent = fm.getAscent();
-
-        // 核心: 基于字符的 Word Wrap 算法
-        java.util.List<String> linesToDraw = new java.util.ArrayList<>();
-        String[] paragraphs = this.text.split("\n", -1);
-
-        for (String paragraph : paragraphs) {
-            if (paragraph.isEmpty()) {
-                linesToDraw.add("");
-                continue;
-            }
+    /**
+     * 按当前宽度换行后的各行文字（显示列表编译文本框时使用）。
+     */
+    public List<String> getWrappedLines() {
+        return Collections.unmodifiableList(Arrays.asList(getLayout().lines));
+    }
 
-            StringBuilder currentLine = new StringBuilder();
-            for (int i = 0; i < paragraph.length(); i++) {
-                char ch = paragraph.charAt(i);
-                if (fm.stringWidth(currentLine.toString() + ch) > this.width && currentLine.length() > 0) {
-                    linesToDraw.add(currentLine.toString());
-                    currentLine = new StringBuilder();
-                    currentLine.append(ch);
-                } else {
-                    currentLine.append(ch);
-                }
-            }
-            linesToDraw.add(currentLine.toString());
-        }
+    public int getLineHeight() {
+        return getLayout().lineHeight;
+    }
+
+    /**
+     * 从行顶到文字基线的距离。
+     */
+    public int getAscent() {
+        return getLayout().ascent;
+    }
 
-        // 绘制所有计算好的行
-        int currentY = this.y;
-        for (String line : linesToDraw) {
-            g2d.drawString(line, this.x, currentY + textAscent);
-            currentY += lineHeight;
+    /**
+     * 取得当前文字、字体和宽度下的换行结果，缓存不匹配时重新排版。
+     * 排版使用默认绘制环境下的字体度量，与缩放比例无关，画布、缩略图和 PDF 的换行位置因此完全相同。
+     */
+    private LineLayout getLayout() {
+        LineLayout cached = this.layout;
+        if (cached != null && cached.matches(text, font, width)) {
+            return cached;
         }
-        
-        // 根据绘制的行数，再次确认高度 (作为双重保险)
-        this.height = Math.max(lineHeight, linesToDraw.size() * lineHeight);
-
-        // 绘制选中效果 (虚线框 + 控制点)
-        if (this.selected) {
-            Stroke dashed = new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{4, 4}, 0);
-            g2d.setStroke(dashed);
-            g2d.setColor(Color.LIGHT_GRAY);
-            g2d.drawRect(this.x - 3, this.y - 3, this.width + 6, this.height + 6);
-            
-            g2d.setStroke(originalStroke);
-            g2d.setColor(Color.BLUE);
-            for (Rectangle handle : getResizeHandles().values()) {
-                g2d.fill(handle);
-            }
+
+        // 换行由画布、缩略图和 PDF 导出共用的 TextWrapper 完成
+        FontMetrics fm = FontMetricsCache.getInstance().get(this.font);
+        List<String> linesToDraw = TextWrapper.wrap(this.text, fm, this.width);
+
+        LineLayout layout = new LineLayout(text, font, width, linesToDraw.toArray(new String[0]), fm);
+        this.layout = layout;
+        return layout;
+    }
+
+    /**
+     * 一次排版的结果：各行文字、行高和总高度，以及决定它是否仍然有效的键值。
+     */
+    private static final class LineLayout {
+        // 键值
+        final String text;
+        final Font font;
+        final int width;
+
+        final String[] lines;
+        final int lineHeight;
+        final int ascent;
+        final int height;
+
+        LineLayout(String text, Font font, int width, String[] lines, FontMetrics fm) {
+            this.text = text;
+            this.font = font;
+            this.width = width;
+            this.lines = lines;
+            this.lineHeight = fm.getHeight();
+            this.ascent = fm.getAscent();
+            this.height = Math.max(lineHeight, lines.length * lineHeight);
         }
 
-        // 恢复状态
-        g2d.setColor(originalColor);
-        g2d.setFont(originalFont);
-        g2d.setStroke(originalStroke);
+        boolean matches(String text, Font font, int width) {
+            return this.text == text && this.font == font && this.width == width;
+        }
     }
 
     public Font getFont() {
@@ -206,9 +231,10 @@ public class TextBox extends AbstractSlideObject {
 
     public void setFont(Font font) {
         this.font = font;
+        this.layout = null;
         // [修改] 字体改变后，调用该方法会将宽度重置为“适应当前字体大小的最小包裹宽度”
         calculateNaturalBounds();
-        // 紧接着根据上面计算出的新宽度，精确计算高度（确保与 draw 方法中的换行逻辑一致）
+        // 紧接着根据上面计算出的新宽度，精确计算高度（与绘制时的换行结果一致）
         updateHeightForWidth(this.width);
     }
 
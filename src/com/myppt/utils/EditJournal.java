@@ -0,0 +1,341 @@
+package com.myppt.utils;
+
+import com.myppt.model.AbstractSlideObject;
+import com.myppt.model.Presentation;
+import com.myppt.model.Slide;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 自动保存用的预写日志（按页记录的重做日志）。
+ * <p>
+ * 每个日志都对应一个基准检查点（用 PresentationFile.writeCopy 写出的完整副本）。
+ * 之后每次修改只追加被修改页面的新内容、首次出现的图片，以及页面顺序发生变化时的新顺序；
+ * 崩溃后把日志按顺序重放到检查点上即可恢复到最后一次修改。
+ * <p>
+ * 日志由若干条记录组成，每条记录为 类型 1 字节 + 长度 4 字节 + 内容 + CRC32 4 字节；
+ * 恢复时遇到写了一半或校验失败的记录就停止，之前的记录仍然有效。
+ * <p>
+ * 线程约定：begin/capture 在事件分发线程上调用（读取模型），open/append/close 在写盘线程上调用。
+ */
+public final class EditJournal {
+    private static final int MAGIC = 0x4D504A4C; // "MPJL"
+
+    private static final byte RECORD_LAYOUT = 1; // 当前页索引 + 页面编号顺序
+    private static final byte RECORD_SLIDE = 2;  // 页面编号 + 引用的图片 + 页面内容
+    private static final byte RECORD_IMAGE = 3;  // 图片内容哈希 + 图片字节
+
+    // --- 以下字段只在事件分发线程上使用 ---
+    private final Presentation presentation;
+    private Map<Slide, Tracked> tracked = new IdentityHashMap<>();
+    private final Set<String> persistedImages; // 检查点或日志中已经有的图片
+    private int nextId = 0;
+    private int[] lastLayout = new int[0];
+    private int lastSlideIndex = -1;
+    private long size = 0;
+    private byte[] header;
+
+    // --- 只在写盘线程上使用 ---
+    private FileOutputStream out;
+
+    private EditJournal(Presentation presentation, Set<String> persistedImages) {
+        this.presentation = presentation;
+        this.persistedImages = persistedImages;
+    }
+
+    /**
+     * 以一个检查点快照为基准开始新的日志（事件分发线程）。
+     * 快照中的页面按顺序编号，之后的修改都以这些编号引用页面。
+     * @param presentation 与快照同时拍摄的演示文稿
+     * @param checkpoint 基准检查点的快照
+     */
+    public static EditJournal begin(Presentation presentation, PresentationFile.Snapshot checkpoint) throws IOException {
+        EditJournal journal = new EditJournal(presentation, checkpoint.imageKeys());
+        for (Slide slide : presentation.getSlides()) {
+            journal.tracked.put(slide, new Tracked(journal.nextId++, slide.getVersion()));
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bos);
+        data.writeInt(MAGIC);
+        journal.writeLayoutIfChanged(data);
+        data.flush();
+        journal.header = bos.toByteArray();
+        journal.size = journal.header.length;
+        return journal;
+    }
+
+    /**
+     * 日志对应的演示文稿。演示文稿被整体替换后，需要重新开始新的日志。
+     */
+    public Presentation getPresentation() {
+        return presentation;
+    }
+
+    /**
+     * 日志（包括尚未写盘的部分）的总字节数，用于决定何时做新的检查点。
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * 收集自上次以来被修改的页面，编码为要追加的日志字节（事件分发线程）。
+     * 尚未加载的页面不可能被修改，不会因此被加载。
+     * @return 要追加的字节；没有任何变化时返回 null
+     */
+    public byte[] capture() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bos);
+
+        Map<Slide, Tracked> current = new IdentityHashMap<>();
+        for (Slide slide : presentation.getSlides()) {
+            Tracked t = tracked.get(slide);
+            if (t == null) {
+                t = new Tracked(nextId++, -1); // 新页面
+            }
+            current.put(slide, t);
+
+            long version = slide.getVersion();
+            if (t.version != version) {
+                Map<String, byte[]> images = new LinkedHashMap<>();
+                byte[] payload = PresentationFile.encodeSlide(slide.getSlideObjects(), images);
+                for (Map.Entry<String, byte[]> image : images.entrySet()) {
+                    if (persistedImages.add(image.getKey())) {
+                        writeImage(data, image.getKey(), image.getValue());
+                    }
+                }
+                writeSlide(data, t.id, images.keySet(), payload);
+                t.version = version;
+            }
+        }
+        tracked = current; // 顺便丢掉已删除的页面
+        writeLayoutIfChanged(data);
+
+        data.flush();
+        if (bos.size() == 0) {
+            return null;
+        }
+        size += bos.size();
+        return bos.toByteArray();
+    }
+
+    private void writeLayoutIfChanged(DataOutputStream data) throws IOException {
+        List<Slide> slides = presentation.getSlides();
+        int[] layout = new int[slides.size()];
+        for (int i = 0; i < layout.length; i++) {
+            layout[i] = tracked.get(slides.get(i)).id;
+        }
+        int slideIndex = presentation.getCurrentSlideIndex();
+        if (Arrays.equals(layout, lastLayout) && slideIndex == lastSlideIndex) {
+            return;
+        }
+        lastLayout = layout;
+        lastSlideIndex = slideIndex;
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bos);
+        record.writeInt(slideIndex);
+        record.writeInt(layout.length);
+        for (int id : layout) {
+            record.writeInt(id);
+        }
+        writeRecord(data, RECORD_LAYOUT, bos.toByteArray());
+    }
+
+    private static void writeSlide(DataOutputStream data, int id, Set<String> imageKeys, byte[] payload) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(payload.length + 64);
+        DataOutputStream record = new DataOutputStream(bos);
+        record.writeInt(id);
+        record.writeInt(imageKeys.size());
+        for (String key : imageKeys) {
+            record.writeUTF(key);
+        }
+        record.write(payload);
+        writeRecord(data, RECORD_SLIDE, bos.toByteArray());
+    }
+
+    private static void writeImage(DataOutputStream data, String key, byte[] bytes) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length + 80);
+        DataOutputStream record = new DataOutputStream(bos);
+        record.writeUTF(key);
+        record.write(bytes);
+        writeRecord(data, RECORD_IMAGE, bos.toByteArray());
+    }
+
+    private static void writeRecord(DataOutputStream data, byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        data.writeByte(type);
+        data.writeInt(payload.length);
+        data.write(payload);
+        data.writeInt((int) crc.getValue());
+    }
+
+    // --- 写盘线程 ---
+
+    /**
+     * 创建日志文件并写入文件头（写盘线程）。文件头同步到磁盘后才能写对应的检查点。
+     */
+    public void open(File file) throws IOException {
+        out = new FileOutputStream(file);
+        append(header);
+    }
+
+    /**
+     * 追加一段由 capture() 得到的字节并同步到磁盘（写盘线程）。
+     */
+    public void append(byte[] bytes) throws IOException {
+        if (out == null) {
+            throw new IOException("编辑日志尚未打开。");
+        }
+        out.write(bytes);
+        out.getFD().sync();
+    }
+
+    /**
+     * 关闭日志文件（写盘线程）。
+     */
+    public void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("关闭编辑日志失败: " + e.getMessage());
+        }
+        out = null;
+    }
+
+    // --- 恢复 ---
+
+    /**
+     * 读取检查点并重放日志，得到崩溃前最后一次修改后的演示文稿。
+     * 返回的演示文稿所有页面都已加载到内存，不再依赖检查点文件。
+     * @param checkpoint 基准检查点文件
+     * @param journal 对应的日志文件；不存在时只恢复检查点
+     */
+    public static Presentation recover(File checkpoint, File journal) throws IOException {
+        Presentation base = PresentationFile.read(checkpoint);
+        base.loadAllSlides();
+        if (!journal.isFile()) {
+            return base;
+        }
+
+        // 检查点中的页面在重放结束前保持引用，保证它们的图片一直留在图片存储中
+        List<Slide> baseSlides = new ArrayList<>(base.getSlides());
+        List<List<AbstractSlideObject>> keepAlive = new ArrayList<>();
+        for (Slide slide : baseSlides) {
+            keepAlive.add(slide.getSlideObjects());
+        }
+
+        Map<Integer, Slide> slidesById = new HashMap<>();
+        Map<String, byte[]> images = new HashMap<>();
+        int[] layout = null;
+        int slideIndex = base.getCurrentSlideIndex();
+        int replayed = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("无法识别的编辑日志: " + journal.getName());
+            }
+            while (true) {
+                byte type;
+                byte[] payload;
+                try {
+                    type = in.readByte();
+                    int length = in.readInt();
+                    if (length < 0) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if (in.readInt() != (int) crc.getValue()) break; // 校验失败：崩溃时写了一半
+                } catch (EOFException e) {
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                if (type == RECORD_LAYOUT) {
+                    slideIndex = record.readInt();
+                    layout = new int[record.readInt()];
+                    for (int i = 0; i < layout.length; i++) {
+                        layout[i] = record.readInt();
+                    }
+                    if (slidesById.isEmpty()) {
+                        // 第一条顺序记录描述的就是检查点中的页面
+                        for (int i = 0; i < layout.length && i < baseSlides.size(); i++) {
+                            slidesById.put(layout[i], baseSlides.get(i));
+                        }
+                    }
+                } else if (type == RECORD_IMAGE) {
+                    String key = record.readUTF();
+                    byte[] bytes = new byte[record.available()];
+                    record.readFully(bytes);
+                    images.put(key, bytes);
+                } else if (type == RECORD_SLIDE) {
+                    int id = record.readInt();
+                    int keyCount = record.readInt();
+                    List<String> keys = new ArrayList<>(keyCount);
+                    for (int k = 0; k < keyCount; k++) {
+                        keys.add(record.readUTF());
+                    }
+                    byte[] content = new byte[record.available()];
+                    record.readFully(content);
+                    List<AbstractSlideObject> objects = PresentationFile.decodeSlide(content, key -> {
+                        byte[] bytes = images.get(key);
+                        if (bytes == null) {
+                            throw new IOException("编辑日志中缺少图片: " + key);
+                        }
+                        return bytes;
+                    }, keys);
+                    slidesById.computeIfAbsent(id, k -> new Slide()).setSlideObjects(objects);
+                    replayed++;
+                }
+            }
+        }
+
+        System.out.println("已从编辑日志重放 " + replayed + " 次页面修改");
+        if (layout == null) {
+            return base;
+        }
+        List<Slide> slides = new ArrayList<>(layout.length);
+        for (int id : layout) {
+            Slide slide = slidesById.get(id);
+            if (slide != null) {
+                slides.add(slide);
+            }
+        }
+        keepAlive.clear(); // 到这里检查点中的页面才可以释放
+        return new Presentation(slides, slideIndex);
+    }
+
+    /**
+     * 日志记住的页面编号和已写入日志的内容版本号。
+     */
+    private static final class Tracked {
+        final int id;
+        long version;
+
+        Tracked(int id, long version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.myppt.utils;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 字体度量（FontMetrics）的共享缓存（单例），替代“new JPanel().getFontMetrics(font)”。
+ * <p>
+ * 度量从一张离屏 BufferedImage 的 Graphics2D 取得，不需要创建 Swing 组件，
+ * 在无界面环境（-Djava.awt.headless=true）、后台线程和命令行导出中都能使用。
+ * 条目按字体和绘制环境（FontRenderContext：缩放、抗锯齿、小数宽度）区分，
+ * 数量有上限，超出时淘汰最久未使用的条目。所有方法都是线程安全的。
+ */
+public final class FontMetricsCache {
+    private static final int MAX_ENTRIES = 64;
+    private static final FontMetricsCache instance = new FontMetricsCache();
+
+    // 与 JComponent.getFontMetrics 相同的默认环境：无变换、不抗锯齿、整数宽度
+    private static final FontRenderContext DEFAULT_CONTEXT = new FontRenderContext(null, false, false);
+
+    private final Map<Key, FontMetrics> entries = new LinkedHashMap<Key, FontMetrics>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, FontMetrics> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private FontMetricsCache() {
+    }
+
+    public static FontMetricsCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * 默认绘制环境下的字体度量，用于文本框的排版计算。
+     */
+    public FontMetrics get(Font font) {
+        return get(font, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * 指定绘制环境下的字体度量。
+     */
+    public FontMetrics get(Font font, FontRenderContext context) {
+        Key key = new Key(font, context);
+        synchronized (entries) {
+            FontMetrics metrics = entries.get(key);
+            if (metrics != null) {
+                return metrics;
+            }
+        }
+        FontMetrics metrics = create(font, context);
+        synchronized (entries) {
+            entries.put(key, metrics);
+        }
+        return metrics;
+    }
+
+    private static FontMetrics create(Font font, FontRenderContext context) {
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scratch.createGraphics();
+        try {
+            g2d.setTransform(context.getTransform());
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, context.getAntiAliasingHint());
+            g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, context.getFractionalMetricsHint());
+            return g2d.getFontMetrics(font);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    private static final class Key {
+        final Font font;
+        final FontRenderContext context;
+
+        Key(Font font, FontRenderContext context) {
+            this.font = font;
+            this.context = context;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return font.equals(k.font) && context.equals(k.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(font, context);
+        }
+    }
+}
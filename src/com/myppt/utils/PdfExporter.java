@@ -1,6 +1,8 @@
 package com.myppt.utils;
 
 import com.myppt.model.*;
+import com.myppt.view.render.DisplayList;
+import com.myppt.view.render.RenderBackend;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -19,13 +21,17 @@ import org.apache.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
 
 import org.apache.pdfbox.util.Matrix;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Font;
-import java.awt.FontMetrics;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
 import java.io.File;
 import java.io.IOException;
-
-import javax.swing.JPanel;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class PdfExporter {
 
@@ -44,8 +50,19 @@ public class PdfExporter {
     /** 中文字体（TrueType） **/
     private PDFont chineseFont;
 
+    /** 按图片内容哈希缓存的 PDF 图片对象，同一文档中的多页共享，每张不同的图片只嵌入一次 **/
+    private final Map<String, PDImageXObject> imageCache;
+
     public PdfExporter(PDDocument document, PDPage page) throws IOException {
+        this(document, page, new HashMap<>());
+    }
+
+    /**
+     * @param imageCache 同一个 PDDocument 的所有页面共用的图片缓存
+     */
+    public PdfExporter(PDDocument document, PDPage page, Map<String, PDImageXObject> imageCache) throws IOException {
         this.document = document;
+        this.imageCache = imageCache;
         this.currentPage = page;
         this.mediaBox = page.getMediaBox();
 
@@ -126,135 +143,125 @@ public class PdfExporter {
         contentStream.addRect(0, 0, slideWidth, slideHeight);
         contentStream.fill();
 
-        for (AbstractSlideObject obj : slide.getSlideObjects()) {
-            drawObject(obj);
+        // 与画布相同的显示列表，交给 PDF 的绘制目标
+        try {
+            DisplayList.compile(slide.getSlideObjects()).replay(new PdfBackend());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
 
         contentStream.restoreGraphicsState();
     }
 
 
-    private void drawObject(AbstractSlideObject object) throws IOException {
-        if (object instanceof RectangleShape) drawRectangleShape((RectangleShape) object);
-        if (object instanceof EllipseShape) drawEllipseShape((EllipseShape) object);
-        if (object instanceof LineShape) drawLineShape((LineShape) object);
-        if (object instanceof TextBox) drawTextBox((TextBox) object);
-        if (object instanceof ImageObject) drawImageObject((ImageObject) object);
-    }
-
-
-    /** ———————————————— 绘制矩形 ———————————————— **/
-    private void drawRectangleShape(RectangleShape rect) throws IOException {
-        contentStream.saveGraphicsState();
-
-        float x = rect.getX();
-        float y = mediaBox.getHeight() - rect.getY() - rect.getHeight();
-
-        if (rect.getFillColor() != null) {
-            contentStream.setNonStrokingColor(toPdfColor(rect.getFillColor()));
-            contentStream.addRect(x, y, rect.getWidth(), rect.getHeight());
-            contentStream.fill();
+    /**
+     * 把显示列表的指令写成 PDF 内容流。页面坐标的 y 轴向下，PDF 的 y 轴向上，这里统一翻转。
+     * RenderBackend 的方法不能抛出 IOException，写入失败时包装成 UncheckedIOException，由 drawSlideToPdf 拆开。
+     */
+    private class PdfBackend implements RenderBackend {
+
+        /** ———————————————— 形状（矩形、椭圆、线条） ———————————————— **/
+        @Override
+        public void fillShape(Shape shape, Color color) {
+            try {
+                contentStream.saveGraphicsState();
+                contentStream.setNonStrokingColor(toPdfColor(color));
+                appendPath(shape);
+                contentStream.fill();
+                contentStream.restoreGraphicsState();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
-        if (rect.getBorderWidth() > 0) {
-            contentStream.setStrokingColor(toPdfColor(rect.getBorderColor()));
-            contentStream.setLineWidth((float) rect.getBorderWidth());
-            contentStream.addRect(x, y, rect.getWidth(), rect.getHeight());
-            contentStream.stroke();
+        @Override
+        public void strokeShape(Shape shape, BasicStroke stroke, Color color) {
+            try {
+                contentStream.saveGraphicsState();
+                contentStream.setStrokingColor(toPdfColor(color));
+                contentStream.setLineWidth(stroke.getLineWidth());
+                if (stroke.getDashArray() != null) {
+                    contentStream.setLineDashPattern(stroke.getDashArray(), stroke.getDashPhase());
+                }
+                appendPath(shape);
+                contentStream.stroke();
+                contentStream.restoreGraphicsState();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
-        contentStream.restoreGraphicsState();
-    }
-
-
-    /** ———————————————— 绘制椭圆 ———————————————— **/
-    private void drawEllipseShape(EllipseShape ellipse) throws IOException {
-        contentStream.saveGraphicsState();
-
-        float x = ellipse.getX();
-        float y = mediaBox.getHeight() - ellipse.getY() - ellipse.getHeight();
-
-        drawEllipsePath(contentStream, x, y, ellipse.getWidth(), ellipse.getHeight());
-        if (ellipse.getFillColor() != null) {
-            contentStream.setNonStrokingColor(toPdfColor(ellipse.getFillColor()));
-            contentStream.fill();
-        }
-        if (ellipse.getBorderWidth() > 0) {
-            contentStream.setStrokingColor(toPdfColor(ellipse.getBorderColor()));
-            contentStream.setLineWidth((float) ellipse.getBorderWidth());
-            contentStream.stroke();
+        // 按形状的路径逐段写出（椭圆由 Java2D 分解为贝塞尔曲线）
+        private void appendPath(Shape shape) throws IOException {
+            float height = mediaBox.getHeight();
+            float[] c = new float[6];
+            float lastX = 0, lastY = 0;
+            for (PathIterator it = shape.getPathIterator(null); !it.isDone(); it.next()) {
+                switch (it.currentSegment(c)) {
+                    case PathIterator.SEG_MOVETO:
+                        contentStream.moveTo(c[0], height - c[1]);
+                        lastX = c[0];
+                        lastY = c[1];
+                        break;
+                    case PathIterator.SEG_LINETO:
+                        contentStream.lineTo(c[0], height - c[1]);
+                        lastX = c[0];
+                        lastY = c[1];
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        // 二次曲线换算成三次曲线
+                        contentStream.curveTo(
+                            lastX + 2f / 3 * (c[0] - lastX), height - (lastY + 2f / 3 * (c[1] - lastY)),
+                            c[2] + 2f / 3 * (c[0] - c[2]), height - (c[3] + 2f / 3 * (c[1] - c[3])),
+                            c[2], height - c[3]);
+                        lastX = c[2];
+                        lastY = c[3];
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        contentStream.curveTo(c[0], height - c[1], c[2], height - c[3], c[4], height - c[5]);
+                        lastX = c[4];
+                        lastY = c[5];
+                        break;
+                    case PathIterator.SEG_CLOSE:
+                        contentStream.closePath();
+                        break;
+                }
+            }
         }
 
-        contentStream.restoreGraphicsState();
-    }
-
-
-    private void drawEllipsePath(PDPageContentStream cs, float x, float y, float w, float h) throws IOException {
-        float k = 0.552284749831f;
-        float ox = (w / 2) * k;
-        float oy = (h / 2) * k;
-
-        float xe = x + w;
-        float ye = y + h;
-        float xm = x + w / 2;
-        float ym = y + h / 2;
-
-        cs.moveTo(x, ym);
-        cs.curveTo(x, ym - oy, xm - ox, y, xm, y);
-        cs.curveTo(xm + ox, y, xe, ym - oy, xe, ym);
-        cs.curveTo(xe, ym + oy, xm + ox, ye, xm, ye);
-        cs.curveTo(xm - ox, ye, x, ym + oy, x, ym);
-        cs.closePath();
-    }
-
-
-    /** ———————————————— 绘制线条 ———————————————— **/
-    private void drawLineShape(LineShape line) throws IOException {
-        contentStream.saveGraphicsState();
-
-        contentStream.setStrokingColor(toPdfColor(line.getLineColor()));
-        contentStream.setLineWidth(line.getStrokeWidth());
-
-        contentStream.moveTo(line.x, mediaBox.getHeight() - line.y);
-        contentStream.lineTo(line.x2, mediaBox.getHeight() - line.y2);
-        contentStream.stroke();
-
-        contentStream.restoreGraphicsState();
-    }
-
-
-    /** ———————————————— 绘制文本 ———————————————— **/
-    private void drawTextBox(TextBox textBox) throws IOException {
-        if (textBox.getText() == null || textBox.getText().isEmpty()) return;
-
-        contentStream.setNonStrokingColor(toPdfColor(textBox.getTextColor()));
-
-        /** 字体选择逻辑 **/
-        PDFont font = helvetica;
-        Font awtFont = textBox.getFont();
-
-        if (awtFont.isBold() && awtFont.isItalic()) font = helveticaBoldOblique;
-        else if (awtFont.isBold()) font = helveticaBold;
-        else if (awtFont.isItalic()) font = helveticaOblique;
-
-        /** 文本换行 **/
-        FontMetrics fm = new JPanel().getFontMetrics(awtFont);
-
-        float x = textBox.getX();
-        float y = mediaBox.getHeight() - textBox.getY();
-
-        for (String paragraph : textBox.getText().split("\n", -1)) {
-            StringBuilder current = new StringBuilder();
-            for (char c : paragraph.toCharArray()) {
-                if (fm.stringWidth(current.toString() + c) > textBox.getBounds().width) {
-                    drawTextLine(font, awtFont.getSize2D(), x, y, current.toString());
-                    y -= awtFont.getSize2D();
-                    current = new StringBuilder();
+        /** ———————————————— 文本 ———————————————— **/
+        @Override
+        public void drawTextLines(String[] lines, Font awtFont, Color color, int x, int y, int lineHeight, int ascent) {
+            try {
+                contentStream.setNonStrokingColor(toPdfColor(color));
+
+                /** 字体选择逻辑 **/
+                PDFont font = helvetica;
+                if (awtFont.isBold() && awtFont.isItalic()) font = helveticaBoldOblique;
+                else if (awtFont.isBold()) font = helveticaBold;
+                else if (awtFont.isItalic()) font = helveticaOblique;
+
+                // 行已经由 TextBox 按画布上的宽度排好，行距也与画布一致
+                float top = mediaBox.getHeight() - y;
+                for (String line : lines) {
+                    if (!line.isEmpty()) {
+                        drawTextLine(font, awtFont.getSize2D(), x, top, line);
+                    }
+                    top -= lineHeight;
                 }
-                current.append(c);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /** ———————————————— 图片 ———————————————— **/
+        @Override
+        public void drawImage(ImageBlob blob, Rectangle bounds, float opacity) {
+            try {
+                drawImageBlob(blob, bounds, opacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
-            drawTextLine(font, awtFont.getSize2D(), x, y, current.toString());
-            y -= awtFont.getSize2D();
         }
     }
 
@@ -279,27 +286,31 @@ public class PdfExporter {
 
 
     /** ———————————————— 绘制图片 ———————————————— **/
-    private void drawImageObject(ImageObject imgObj) throws IOException {
-        // [!] 核心修改: 从 imgObj 的 imageData 获取字节数据
-        if (imgObj.getImageData() == null || imgObj.getImageData().length == 0) { // [!] 检查 imageData
+    private void drawImageBlob(ImageBlob blob, Rectangle bounds, float opacity) throws IOException {
+        // [!] 核心修改: 从共享的图片条目获取字节数据
+        if (blob.getData() == null || blob.getData().length == 0) { // [!] 检查 imageData
             System.err.println("警告: 图像对象没有嵌入数据，无法导出PDF。");
             return;
         }
         
-        // [!] 核心修改: 从字节数组创建 PDImageXObject
-        PDImageXObject pdImage = PDImageXObject.createFromByteArray(document, imgObj.getImageData(), null); // null for image name
+        // [!] 核心修改: 同一张图片只创建一次 PDImageXObject，之后各页直接引用
+        PDImageXObject pdImage = imageCache.get(blob.getKey());
+        if (pdImage == null) {
+            pdImage = PDImageXObject.createFromByteArray(document, blob.getData(), null); // null for image name
+            imageCache.put(blob.getKey(), pdImage);
+        }
 
         contentStream.saveGraphicsState();
         PDExtendedGraphicsState gs = new PDExtendedGraphicsState();
-        gs.setNonStrokingAlphaConstant(imgObj.getOpacity());
-        gs.setStrokingAlphaConstant(imgObj.getOpacity());
+        gs.setNonStrokingAlphaConstant(opacity);
+        gs.setStrokingAlphaConstant(opacity);
         contentStream.setGraphicsStateParameters(gs);
 
         contentStream.drawImage(pdImage, 
-                                imgObj.getX(), 
-                                mediaBox.getHeight() - (imgObj.getY() + imgObj.getBounds().height),
-                                imgObj.getBounds().width, 
-                                imgObj.getBounds().height);
+                                bounds.x, 
+                                mediaBox.getHeight() - (bounds.y + bounds.height),
+                                bounds.width, 
+                                bounds.height);
         contentStream.restoreGraphicsState();
     }
 
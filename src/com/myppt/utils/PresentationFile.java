@@ -0,0 +1,715 @@
+package com.myppt.utils;
+
+import com.myppt.model.AbstractSlideObject;
+import com.myppt.model.ImageBlob;
+import com.myppt.model.ImageBlobStore;
+import com.myppt.model.ImageObject;
+import com.myppt.model.ModelCodec;
+import com.myppt.model.Presentation;
+import com.myppt.model.Slide;
+import com.myppt.model.SlideLoader;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * .myppt 分块容器格式的读写工具。
+ * <p>
+ * 文件布局：
+ * <pre>
+ * [文件头] 魔数 | 格式版本 | 目录偏移 | 目录长度        (固定 32 字节)
+ * [记录区] 每一页幻灯片、每一张不同的图片各占一条独立记录 (类型 1 字节 + 长度 4 字节 + 内容)
+ * [目录]   当前页索引 | 页面表(偏移、长度、引用的图片) | 图片表(内容哈希、偏移、长度)
+ * </pre>
+ * 打开文件时只读取文件头和目录，每一页的内容在第一次被访问时才从对应记录中读取。
+ * <p>
+ * 保存同一个文件时采用追加写：只把自上次保存以来修改过的页面和新出现的图片追加到文件末尾，
+ * 再追加一份新目录并改写文件头指向它；未修改的页面继续使用原有记录。
+ * 不再被目录引用的旧记录成为垃圾，当垃圾超过文件大小的一半时整体重写一次（压缩）。
+ * 旧版文件（整个 Presentation 用 ObjectOutputStream 直接写出）仍然可以打开，
+ * 再次保存时会自动转换为新格式。
+ */
+public final class PresentationFile {
+    private static final int MAGIC = 0x4D505054; // "MPPT"
+    private static final int FORMAT_VERSION = 3; // 2: 目录中记录了每条记录的长度; 3: 页面记录使用 ModelCodec 编码
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_HEADER_SIZE = 5;
+
+    private static final byte RECORD_SLIDE = 1;
+    private static final byte RECORD_IMAGE = 2;
+
+    // 文件小于该大小时不做压缩，垃圾占比超过该比例时整体重写
+    private static final long COMPACT_MIN_SIZE = 1L << 20;
+    private static final double COMPACT_GARBAGE_RATIO = 0.5;
+
+    // 读取记录与整体重写替换文件互斥，保证后台保存期间其他线程读到的记录始终有效
+    private static final Object FILE_LOCK = new Object();
+    // 每个文件（按规范路径）当前这一代的内容，由 FILE_LOCK 保护
+    private static final Map<String, Generation> GENERATIONS = new HashMap<>();
+
+    private PresentationFile() {}
+
+    /**
+     * 读取一个 .myppt 文件。新格式只读取目录，页面延迟加载；旧格式整体反序列化。
+     * @param file 要打开的文件
+     * @return 读取到的演示文稿
+     * @throws IOException 文件损坏或格式无法识别时抛出
+     */
+    public static Presentation read(File file) throws IOException {
+        if (isLegacyFormat(file)) {
+            return readLegacy(file);
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC) {
+                throw new IOException("无法识别的文件格式: " + file.getName());
+            }
+            int version = raf.readInt();
+            if (version > FORMAT_VERSION) {
+                throw new IOException("文件格式版本过新 (" + version + ")，请升级程序。");
+            }
+            long tocOffset = raf.readLong();
+            int tocLength = raf.readInt();
+            if (tocOffset < HEADER_SIZE || tocOffset + tocLength > raf.length()) {
+                throw new IOException("文件目录已损坏。");
+            }
+
+            byte[] toc = new byte[tocLength];
+            raf.seek(tocOffset);
+            raf.readFully(toc);
+            return readToc(file, toc, version);
+        }
+    }
+
+    private static Presentation readToc(File file, byte[] toc, int version) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(toc));
+        int currentSlideIndex = in.readInt();
+
+        int slideCount = in.readInt();
+        Extent[] slideExtents = new Extent[slideCount];
+        List<List<String>> slideImageKeys = new ArrayList<>(slideCount);
+        for (int i = 0; i < slideCount; i++) {
+            slideExtents[i] = readExtent(in, version);
+            int keyCount = in.readInt();
+            List<String> keys = new ArrayList<>(keyCount);
+            for (int k = 0; k < keyCount; k++) {
+                keys.add(in.readUTF());
+            }
+            slideImageKeys.add(keys);
+        }
+
+        int imageCount = in.readInt();
+        Map<String, Extent> images = new HashMap<>();
+        for (int i = 0; i < imageCount; i++) {
+            String key = in.readUTF();
+            images.put(key, readExtent(in, version));
+        }
+
+        Archive archive = new Archive(file, images, currentGeneration(file));
+        List<Slide> slides = new ArrayList<>(slideCount);
+        for (int i = 0; i < slideCount; i++) {
+            slides.add(new Slide(new RecordLoader(archive, slideExtents[i], slideImageKeys.get(i))));
+        }
+        return new Presentation(slides, currentSlideIndex);
+    }
+
+    // 版本 1 的目录没有记录长度，长度按 0 计（只影响压缩时机的估算）
+    private static Extent readExtent(DataInputStream in, int version) throws IOException {
+        long offset = in.readLong();
+        int length = version >= 2 ? in.readInt() : 0;
+        return new Extent(offset, length);
+    }
+
+    /**
+     * 判断文件是否为旧版的整体 Java 序列化格式（以 0xACED 开头）。
+     */
+    public static boolean isLegacyFormat(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == 0xAC && in.read() == 0xED;
+        }
+    }
+
+    private static Presentation readLegacy(File file) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            System.out.println("检测到旧版文件格式，再次保存时将转换为分块格式: " + file.getName());
+            return (Presentation) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("旧版文件格式不兼容: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 在当前线程（通常是事件分发线程）上为演示文稿拍一个一致的快照。
+     * 未修改的页面只记下它们已有的记录，修改过的页面在这里序列化为字节，
+     * 所以耗时与修改量成正比；之后的写盘可以在后台线程进行，期间对模型的修改不会影响快照。
+     * @param presentation 要保存的演示文稿
+     * @return 可在任意线程写出的快照
+     * @throws IOException 序列化页面失败时抛出
+     */
+    public static Snapshot snapshot(Presentation presentation) throws IOException {
+        return new Snapshot(plan(presentation.getSlides()), presentation.getCurrentSlideIndex());
+    }
+
+    /**
+     * 保存演示文稿（在当前线程完成快照和写盘）。
+     * @see #save(Snapshot, File, IntConsumer)
+     */
+    public static void save(Presentation presentation, File file) throws IOException {
+        save(snapshot(presentation), file, null);
+    }
+
+    /**
+     * 把快照保存到文件，之后快照中的各页面都以该文件作为自己的存储位置。
+     * 如果目标就是这些页面当前所在的文件，只追加修改过的页面（增量保存）；
+     * 否则（另存为、旧格式文件、需要压缩时）整体重写。可以在后台线程调用。
+     * @param snapshot 由 {@link #snapshot(Presentation)} 得到的快照
+     * @param file 目标文件
+     * @param progress 进度回调（0~100），在调用线程上回调；可以为 null
+     * @throws IOException 写入失败时抛出，此时原文件保持不变
+     */
+    public static void save(Snapshot snapshot, File file, IntConsumer progress) throws IOException {
+        Archive target = findAppendTarget(snapshot.plans, file);
+        if (target != null && !needsCompaction(snapshot.plans, target)) {
+            append(snapshot, target, progress);
+        } else {
+            writeFull(snapshot, file, true, progress);
+        }
+    }
+
+    /**
+     * 把演示文稿完整写出为一个独立的副本（例如自动保存），不改变页面的存储位置。
+     * @param presentation 要保存的演示文稿
+     * @param file 目标文件
+     * @throws IOException 写入失败时抛出
+     */
+    public static void writeCopy(Presentation presentation, File file) throws IOException {
+        writeCopy(snapshot(presentation), file);
+    }
+
+    /**
+     * 把快照完整写出为一个独立的副本，不改变页面的存储位置。可以在后台线程调用。
+     */
+    public static void writeCopy(Snapshot snapshot, File file) throws IOException {
+        writeFull(snapshot, file, false, null);
+    }
+
+    /**
+     * 为每一页决定写出方式：未修改的页面沿用已有记录，修改过的页面在这里序列化。
+     */
+    private static List<SlidePlan> plan(List<Slide> slides) throws IOException {
+        List<SlidePlan> plans = new ArrayList<>(slides.size());
+        for (Slide slide : slides) {
+            long version = slide.getVersion();
+            SlideLoader source = slide.getPersistedSource();
+            if (source instanceof RecordLoader) {
+                plans.add(new SlidePlan(slide, version, (RecordLoader) source, null, null));
+            } else {
+                Map<String, byte[]> images = new LinkedHashMap<>();
+                byte[] payload = encodeSlide(slide.getSlideObjects(), images);
+                plans.add(new SlidePlan(slide, version, null, payload, images));
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * 如果文件就是页面当前所在的分块文件，返回它的 Archive，可以追加写入；否则返回 null。
+     */
+    private static Archive findAppendTarget(List<SlidePlan> plans, File file) throws IOException {
+        if (!file.isFile() || isLegacyFormat(file)) {
+            return null;
+        }
+        File absolute = file.getAbsoluteFile();
+        for (SlidePlan plan : plans) {
+            if (plan.source != null && plan.source.archive.file.getAbsoluteFile().equals(absolute)) {
+                // 快照拍下之后文件已被整体重写（记录位置已经失效）时不能追加，改为整体重写
+                return plan.source.archive.generation.isReplaced() ? null : plan.source.archive;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 估算追加之后文件中仍被引用的字节占比，垃圾过多时改为整体重写。
+     */
+    private static boolean needsCompaction(List<SlidePlan> plans, Archive target) {
+        long live = HEADER_SIZE;
+        long appended = 0;
+        Set<String> counted = new HashSet<>();
+        for (SlidePlan plan : plans) {
+            if (plan.source != null && plan.source.archive.generation == target.generation) {
+                live += plan.source.extent.length;
+                for (String key : plan.source.imageKeys) {
+                    Extent image = target.images.get(key);
+                    if (image != null && counted.add(key)) {
+                        live += image.length;
+                    }
+                }
+            } else if (plan.payload != null) {
+                appended += RECORD_HEADER_SIZE + plan.payload.length;
+                for (Map.Entry<String, byte[]> image : plan.images.entrySet()) {
+                    if (counted.add(image.getKey())) {
+                        Extent existing = target.images.get(image.getKey());
+                        if (existing != null) {
+                            live += existing.length;
+                        } else {
+                            appended += RECORD_HEADER_SIZE + image.getValue().length;
+                        }
+                    }
+                }
+            } else {
+                return true; // 页面来自另一个文件，直接整体重写
+            }
+        }
+        long total = target.file.length() + appended;
+        live += appended;
+        return total > COMPACT_MIN_SIZE && live < total * (1 - COMPACT_GARBAGE_RATIO);
+    }
+
+    /**
+     * 整体写出到同目录下的临时文件并同步到磁盘，再原子地替换目标文件，写到一半失败不会破坏原文件。
+     * 未修改的页面直接复制原始记录，不会被反序列化。
+     */
+    private static void writeFull(Snapshot snapshot, File file, boolean bind, IntConsumer progress) throws IOException {
+        File tmpFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".saving");
+        Layout layout;
+
+        try (RandomAccessFile out = new RandomAccessFile(tmpFile, "rw")) {
+            out.setLength(0);
+            out.write(new byte[HEADER_SIZE]); // 文件头最后回填
+
+            layout = writeRecords(out, snapshot.plans, null, progress);
+            byte[] toc = encodeToc(snapshot.currentSlideIndex, layout);
+            long tocOffset = out.getFilePointer();
+            out.write(toc);
+
+            writeHeader(out, tocOffset, toc.length);
+            out.getFD().sync();
+        } catch (IOException e) {
+            tmpFile.delete();
+            throw e;
+        }
+
+        Archive archive;
+        synchronized (FILE_LOCK) {
+            String path = file.getCanonicalPath();
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Generation generation = new Generation();
+            archive = new Archive(file, layout.images, generation);
+            Generation replaced = GENERATIONS.put(path, generation);
+            if (replaced != null) {
+                // 其他线程（例如自动保存的检查点）可能还拿着旧文件中的记录位置，
+                // 旧文件的每一个 Archive 都经由共享的这一代转发到新文件中的对应记录
+                replaced.forward(archive, relocations(snapshot.plans, layout, replaced));
+            }
+        }
+
+        if (bind) {
+            // 原文件已被替换，所有页面的记录位置都要指向新文件
+            bindSlides(snapshot.plans, layout, archive);
+        }
+        report(progress, 100);
+    }
+
+    /**
+     * 增量保存：在文件末尾追加修改过的页面、新图片和新目录，同步到磁盘后再改写文件头。
+     * 文件头改写之前发生任何失败，文件头仍指向旧目录，文件内容保持上一次保存的状态。
+     */
+    private static void append(Snapshot snapshot, Archive target, IntConsumer progress) throws IOException {
+        Layout layout;
+
+        try (RandomAccessFile out = new RandomAccessFile(target.file, "rw")) {
+            long originalLength = out.length();
+            try {
+                out.seek(originalLength);
+                layout = writeRecords(out, snapshot.plans, target, progress);
+                byte[] toc = encodeToc(snapshot.currentSlideIndex, layout);
+                long tocOffset = out.getFilePointer();
+                out.write(toc);
+                out.getFD().sync();
+
+                writeHeader(out, tocOffset, toc.length);
+                out.getFD().sync();
+            } catch (IOException e) {
+                out.setLength(originalLength); // 去掉写了一半的尾部
+                throw e;
+            }
+        }
+
+        bindSlides(snapshot.plans, layout, new Archive(target.file, layout.images, target.generation));
+        report(progress, 100);
+    }
+
+    /**
+     * 写出所有需要写出的记录。target 不为 null 时表示追加到该文件，其中已有的页面和图片记录直接引用。
+     */
+    private static Layout writeRecords(RandomAccessFile out, List<SlidePlan> plans, Archive target,
+                                       IntConsumer progress) throws IOException {
+        Layout layout = new Layout(plans.size());
+
+        for (int i = 0; i < plans.size(); i++) {
+            SlidePlan plan = plans.get(i);
+            RecordLoader source = plan.source;
+
+            if (source != null && target != null && source.archive.generation == target.generation) {
+                // 未修改且已在目标文件中: 沿用原记录
+                for (String key : source.imageKeys) {
+                    putImage(out, layout, target, key, null, source.archive);
+                }
+                layout.slides[i] = source.extent;
+                layout.slideImageKeys.add(source.imageKeys);
+            } else if (source != null) {
+                // 未修改但在另一个文件中: 原样复制记录及其引用的图片
+                byte[] payload = source.archive.readRecord(source.extent.offset, RECORD_SLIDE);
+                for (String key : source.imageKeys) {
+                    putImage(out, layout, target, key, null, source.archive);
+                }
+                layout.slides[i] = writeRecord(out, RECORD_SLIDE, payload);
+                layout.slideImageKeys.add(source.imageKeys);
+            } else {
+                for (Map.Entry<String, byte[]> image : plan.images.entrySet()) {
+                    putImage(out, layout, target, image.getKey(), image.getValue(), null);
+                }
+                layout.slides[i] = writeRecord(out, RECORD_SLIDE, plan.payload);
+                layout.slideImageKeys.add(new ArrayList<>(plan.images.keySet()));
+            }
+            // 记录写完后还有目录和同步，进度最多报到 90%
+            report(progress, (i + 1) * 90 / plans.size());
+        }
+        return layout;
+    }
+
+    // 每张图片只写一次；目标文件中已有的图片直接引用
+    private static void putImage(RandomAccessFile out, Layout layout, Archive target, String key,
+                                 byte[] data, Archive from) throws IOException {
+        if (layout.images.containsKey(key)) return;
+        Extent existing = target != null ? target.images.get(key) : null;
+        if (existing != null) {
+            layout.images.put(key, existing);
+        } else {
+            layout.images.put(key, writeRecord(out, RECORD_IMAGE, data != null ? data : from.readImage(key)));
+        }
+    }
+
+    // 整体重写时，旧文件中每条仍被引用的记录在新文件中的位置（旧文件可能对应多个 Archive，逐个收集）
+    private static Map<Long, Long> relocations(List<SlidePlan> plans, Layout layout, Generation old) {
+        Map<Long, Long> moved = new HashMap<>();
+        Set<Archive> archives = new HashSet<>();
+        for (int i = 0; i < plans.size(); i++) {
+            RecordLoader source = plans.get(i).source;
+            if (source != null && source.archive.generation == old) {
+                moved.put(source.extent.offset, layout.slides[i].offset);
+                archives.add(source.archive);
+            }
+        }
+        for (Archive archive : archives) {
+            for (Map.Entry<String, Extent> image : archive.images.entrySet()) {
+                Extent after = layout.images.get(image.getKey());
+                if (after != null) {
+                    moved.put(image.getValue().offset, after.offset);
+                }
+            }
+        }
+        return moved;
+    }
+
+    // 文件当前这一代的内容，第一次打开时新建
+    private static Generation currentGeneration(File file) throws IOException {
+        synchronized (FILE_LOCK) {
+            return GENERATIONS.computeIfAbsent(file.getCanonicalPath(), path -> new Generation());
+        }
+    }
+
+    private static void bindSlides(List<SlidePlan> plans, Layout layout, Archive archive) {
+        for (int i = 0; i < plans.size(); i++) {
+            SlidePlan plan = plans.get(i);
+            plan.slide.markPersisted(new RecordLoader(archive, layout.slides[i], layout.slideImageKeys.get(i)), plan.version);
+        }
+    }
+
+    private static void report(IntConsumer progress, int percent) {
+        if (progress != null) {
+            progress.accept(percent);
+        }
+    }
+
+    private static Extent writeRecord(RandomAccessFile out, byte type, byte[] payload) throws IOException {
+        long offset = out.getFilePointer();
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+        return new Extent(offset, RECORD_HEADER_SIZE + payload.length);
+    }
+
+    private static void writeHeader(RandomAccessFile out, long tocOffset, int tocLength) throws IOException {
+        out.seek(0);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(tocOffset);
+        out.writeInt(tocLength);
+    }
+
+    private static byte[] encodeToc(int currentSlideIndex, Layout layout) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(currentSlideIndex);
+        out.writeInt(layout.slides.length);
+        for (int i = 0; i < layout.slides.length; i++) {
+            out.writeLong(layout.slides[i].offset);
+            out.writeInt(layout.slides[i].length);
+            out.writeInt(layout.slideImageKeys.get(i).size());
+            for (String key : layout.slideImageKeys.get(i)) {
+                out.writeUTF(key);
+            }
+        }
+        out.writeInt(layout.images.size());
+        for (Map.Entry<String, Extent> image : layout.images.entrySet()) {
+            out.writeUTF(image.getKey());
+            out.writeLong(image.getValue().offset);
+            out.writeInt(image.getValue().length);
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+    /**
+     * 把一页的对象列表用 ModelCodec 编码为记录内容。ImageObject 只写出图片的内容哈希，
+     * 它引用的图片字节收集到 imagesOut 中，由调用者按哈希去重后单独成记录。
+     * 编辑日志（EditJournal）使用同样的页面编码。
+     */
+    static byte[] encodeSlide(List<AbstractSlideObject> objects, Map<String, byte[]> imagesOut) throws IOException {
+        for (AbstractSlideObject object : objects) {
+            if (object instanceof ImageObject) {
+                ImageBlob blob = ((ImageObject) object).getBlob();
+                imagesOut.putIfAbsent(blob.getKey(), blob.getData());
+            }
+        }
+
+        return ModelCodec.encode(objects);
+    }
+
+    /**
+     * 反序列化一条页面记录。先把该页引用的图片放进图片存储（已存在的直接复用），
+     * 这样 ImageObject 反序列化时可以按哈希找到共享的图片；解码完成后再释放这里的临时引用。
+     * @param images 存储中还没有的图片从这里读取
+     */
+    @SuppressWarnings("unchecked")
+    static List<AbstractSlideObject> decodeSlide(byte[] payload, ImageSource images, List<String> imageKeys) throws IOException {
+        ImageBlobStore store = ImageBlobStore.getInstance();
+        List<String> pinned = new ArrayList<>(imageKeys.size());
+        try {
+            for (String key : imageKeys) {
+                if (store.acquireExisting(key) == null) {
+                    store.acquire(key, images.readImage(key));
+                }
+                pinned.add(key);
+            }
+            if (ModelCodec.isEncoded(payload)) {
+                return ModelCodec.decode(payload);
+            }
+            // 版本 1、2 的文件中页面记录是 Java 序列化数据
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+                return (List<AbstractSlideObject>) ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("页面记录格式不兼容: " + e.getMessage(), e);
+            }
+        } finally {
+            for (String key : pinned) {
+                store.release(key);
+            }
+        }
+    }
+
+    // --- 内部类 ---
+
+    /**
+     * 按内容哈希读取图片字节的来源（分块文件、编辑日志）。
+     */
+    interface ImageSource {
+        byte[] readImage(String key) throws IOException;
+    }
+
+    /**
+     * 一条记录在文件中的位置和总长度（含记录头）。
+     */
+    private static final class Extent {
+        final long offset;
+        final int length;
+
+        Extent(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 同一个文件在两次整体重写之间的“一代”内容。打开文件时和每次追加后新建的 Archive 都共享同一代：
+     * 追加只在文件末尾写入，已有记录的位置在这一代中一直有效。
+     * 文件被整体重写替换后，这一代被标记为已替换，它的所有 Archive 都把读取转发到新文件中的对应记录；
+     * 新文件中没有的记录立即报错，不会按旧位置读到新文件中的其他记录。
+     */
+    private static final class Generation {
+        private Archive forwardTo;            // 由 FILE_LOCK 保护
+        private Map<Long, Long> relocated;    // 旧偏移 -> 新文件中的偏移
+
+        void forward(Archive replacement, Map<Long, Long> relocated) {
+            this.forwardTo = replacement;
+            this.relocated = relocated;
+        }
+
+        boolean isReplaced() {
+            synchronized (FILE_LOCK) {
+                return forwardTo != null;
+            }
+        }
+    }
+
+    /**
+     * 一个已打开的分块文件：文件路径、所属的一代和图片索引。只在需要时临时打开文件读取记录。
+     */
+    private static final class Archive implements ImageSource {
+        final File file;
+        final Map<String, Extent> images;
+        final Generation generation;
+
+        Archive(File file, Map<String, Extent> images, Generation generation) {
+            this.file = file;
+            this.images = new HashMap<>(images);
+            this.generation = generation;
+        }
+
+        byte[] readRecord(long offset, byte expectedType) throws IOException {
+            synchronized (FILE_LOCK) {
+                if (generation.forwardTo != null) {
+                    Long moved = generation.relocated.get(offset);
+                    if (moved == null) {
+                        throw new IOException("记录已不在文件中 (偏移 " + offset + ")");
+                    }
+                    return generation.forwardTo.readRecord(moved, expectedType);
+                }
+                try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                    raf.seek(offset);
+                    byte type = raf.readByte();
+                    int length = raf.readInt();
+                    if (type != expectedType || length < 0 || offset + RECORD_HEADER_SIZE + length > raf.length()) {
+                        throw new IOException("记录已损坏 (偏移 " + offset + ")");
+                    }
+                    byte[] payload = new byte[length];
+                    raf.readFully(payload);
+                    return payload;
+                }
+            }
+        }
+
+        @Override
+        public byte[] readImage(String key) throws IOException {
+            Extent extent = images.get(key);
+            if (extent == null) {
+                throw new IOException("文件中缺少图片记录: " + key);
+            }
+            return readRecord(extent.offset, RECORD_IMAGE);
+        }
+    }
+
+    /**
+     * 从分块文件中的一条页面记录延迟加载页面内容。
+     */
+    private static final class RecordLoader implements SlideLoader {
+        final Archive archive;
+        final Extent extent;
+        final List<String> imageKeys;
+
+        RecordLoader(Archive archive, Extent extent, List<String> imageKeys) {
+            this.archive = archive;
+            this.extent = extent;
+            this.imageKeys = imageKeys;
+        }
+
+        @Override
+        public List<AbstractSlideObject> load() throws IOException {
+            return decodeSlide(archive.readRecord(extent.offset, RECORD_SLIDE), archive, imageKeys);
+        }
+    }
+
+    /**
+     * 保存用的演示文稿快照：每一页要么引用已有的记录，要么是已经序列化好的字节。
+     * 快照创建之后与模型再无关联，可以交给后台线程写出。
+     */
+    public static final class Snapshot {
+        private final List<SlidePlan> plans;
+        private final int currentSlideIndex;
+
+        private Snapshot(List<SlidePlan> plans, int currentSlideIndex) {
+            this.plans = plans;
+            this.currentSlideIndex = currentSlideIndex;
+        }
+
+        /**
+         * 快照中所有页面引用的图片的内容哈希。
+         */
+        Set<String> imageKeys() {
+            Set<String> keys = new HashSet<>();
+            for (SlidePlan plan : plans) {
+                keys.addAll(plan.source != null ? plan.source.imageKeys : plan.images.keySet());
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * 保存时一页的写出方式：source 不为 null 表示页面未修改、沿用已有记录；
+     * 否则 payload 和 images 是刚刚序列化出的页面内容及其引用的图片。
+     */
+    private static final class SlidePlan {
+        final Slide slide;
+        final long version;
+        final RecordLoader source;
+        final byte[] payload;
+        final Map<String, byte[]> images;
+
+        SlidePlan(Slide slide, long version, RecordLoader source, byte[] payload, Map<String, byte[]> images) {
+            this.slide = slide;
+            this.version = version;
+            this.source = source;
+            this.payload = payload;
+            this.images = images;
+        }
+    }
+
+    /**
+     * 写出过程中得到的记录位置，用于生成目录和重新绑定页面。
+     */
+    private static final class Layout {
+        final Extent[] slides;
+        final List<List<String>> slideImageKeys;
+        final Map<String, Extent> images = new LinkedHashMap<>();
+
+        Layout(int slideCount) {
+            this.slides = new Extent[slideCount];
+            this.slideImageKeys = new ArrayList<>(slideCount);
+        }
+    }
+}
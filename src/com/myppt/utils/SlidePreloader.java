@@ -0,0 +1,138 @@
+package com.myppt.utils;
+
+import com.myppt.model.Presentation;
+import com.myppt.model.Slide;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * 打开文件后在后台并行加载所有尚未加载的页面（读取页面记录、解码其中的对象）。
+ * 图片在这里只登记到图片存储中，像素不解码：第一次绘制时才由 ImageBlob 在它自己的后台解码线程上解码。
+ * <p>
+ * 加载任务运行在一个 ForkJoinPool 上，每个工作线程反复取出“离当前页最近的、还没有开始加载的页面”，
+ * 所以当前页和它前后的页面最先加载完，编辑器可以立即使用，其余页面随后陆续就绪。
+ * 用户切换页面时调用 {@link #focus(Slide)}，后续的加载顺序会以新的当前页为中心。
+ * <p>
+ * 页面的加载本身由 Slide.ensureLoaded 同步，事件分发线程访问一个正在后台加载的页面时只会等待它完成，
+ * 不会重复加载。加载失败的页面由 Slide 自己处理（打印错误，显示为空白页，保存时沿用原记录）。
+ */
+public final class SlidePreloader {
+    // 给事件分发线程留一个核心
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+        pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("MyPPT-Load-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        },
+        null, true);
+
+    // --- 以下字段由 this 保护 ---
+    private final List<Slide> slides;
+    private final boolean[] claimed;
+    private int focusIndex;
+    private int remaining;
+    private boolean cancelled = false;
+
+    private final long startTime = System.nanoTime();
+    private int running;
+
+    private SlidePreloader(List<Slide> slides, int focusIndex) {
+        this.slides = slides;
+        this.claimed = new boolean[slides.size()];
+        this.focusIndex = focusIndex;
+        this.remaining = slides.size();
+    }
+
+    /**
+     * 为刚打开的演示文稿启动后台加载（事件分发线程）。没有需要加载的页面时返回 null。
+     */
+    public static SlidePreloader start(Presentation presentation) {
+        List<Slide> pending = new ArrayList<>();
+        int focusIndex = 0;
+        List<Slide> slides = presentation.getSlides();
+        for (int i = 0; i < slides.size(); i++) {
+            Slide slide = slides.get(i);
+            if (i == presentation.getCurrentSlideIndex()) {
+                focusIndex = pending.size();
+            }
+            if (!slide.isLoaded()) {
+                pending.add(slide);
+            }
+        }
+        if (pending.isEmpty()) {
+            return null;
+        }
+
+        SlidePreloader preloader = new SlidePreloader(pending, focusIndex);
+        int workers = Math.min(POOL.getParallelism(), pending.size());
+        preloader.running = workers;
+        for (int i = 0; i < workers; i++) {
+            POOL.execute(preloader::run);
+        }
+        return preloader;
+    }
+
+    /**
+     * 把加载中心移到指定页面（事件分发线程）。
+     */
+    public synchronized void focus(Slide slide) {
+        int index = slides.indexOf(slide);
+        if (index >= 0) {
+            focusIndex = index;
+        }
+    }
+
+    /**
+     * 停止加载剩余的页面（演示文稿被替换时调用）。正在加载的页面会完成。
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+    }
+
+    // 工作线程：不断加载下一个页面，直到全部完成或被取消
+    private void run() {
+        Slide slide;
+        while ((slide = next()) != null) {
+            slide.getSlideObjects(); // 触发 ensureLoaded
+        }
+        finishWorker();
+    }
+
+    /**
+     * 取出离加载中心最近、还没有被任何工作线程领取的页面（同样距离时先取后面的页）。
+     */
+    private synchronized Slide next() {
+        if (cancelled || remaining == 0) {
+            return null;
+        }
+        for (int distance = 0; distance < slides.size(); distance++) {
+            int after = focusIndex + distance;
+            if (after < slides.size() && !claimed[after]) {
+                return claim(after);
+            }
+            int before = focusIndex - distance;
+            if (before >= 0 && !claimed[before]) {
+                return claim(before);
+            }
+        }
+        return null;
+    }
+
+    private Slide claim(int index) {
+        claimed[index] = true;
+        remaining--;
+        return slides.get(index);
+    }
+
+    private synchronized void finishWorker() {
+        if (--running == 0 && !cancelled) {
+            long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+            System.out.println("后台加载完成: " + slides.size() + " 页，用时 " + elapsedMs + " ms");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.myppt.utils;
+
+import java.awt.FontMetrics;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文本框的自动换行算法，画布、缩略图、放映和 PDF 导出共用，保证各处的换行位置一致。
+ * <p>
+ * 每个字符只测量一次宽度（FontMetrics.charWidth），边扫描边累加行宽，所以一段文字的换行是线性时间的，
+ * 不再每加一个字就重新测量整行。
+ * 可以换行的位置：空格之后、中日韩文字的前后（不把“，。）”等标点放到行首，也不把“（《”等放到行尾）、
+ * 连字符之后。一行放不下时退回到行内最后一个可换行的位置；一个单词比整行还宽时才在单词中间断开。
+ * 行尾的空格允许超出宽度，不会单独换到下一行。
+ */
+public final class TextWrapper {
+    private static final String NO_LINE_START = "，。、；：？！）」』】》〉”’…,.;:?!)]}";
+    private static final String NO_LINE_END = "（「『【《〈“‘([{";
+
+    private TextWrapper() {
+    }
+
+    /**
+     * 把文本按 '\n' 分段，再把每段按最大宽度折成若干行。
+     * @param text 文本框的全部文字
+     * @param fm 用于测量的字体度量
+     * @param maxWidth 一行的最大宽度（像素）
+     * @return 依次排列的各行，空段落对应一个空行；返回的行不包含行尾的空格
+     */
+    public static List<String> wrap(String text, FontMetrics fm, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        int paragraphStart = 0;
+        while (true) {
+            int paragraphEnd = text.indexOf('\n', paragraphStart);
+            if (paragraphEnd < 0) {
+                wrapParagraph(text, paragraphStart, text.length(), fm, maxWidth, lines);
+                return lines;
+            }
+            wrapParagraph(text, paragraphStart, paragraphEnd, fm, maxWidth, lines);
+            paragraphStart = paragraphEnd + 1;
+        }
+    }
+
+    private static void wrapParagraph(String text, int start, int end, FontMetrics fm, int maxWidth, List<String> lines) {
+        int lineStart = start;
+        int lineWidth = 0;
+        int lastBreak = -1;    // 最近一个可换行位置（下一行从这里开始）
+        int widthAtBreak = 0;  // 行首到该位置的宽度
+
+        int i = start;
+        while (i < end) {
+            int cp = text.codePointAt(i);
+            int next = i + Character.charCount(cp);
+            int advance = fm.charWidth(cp);
+
+            if (lineWidth + advance > maxWidth && i > lineStart && !Character.isWhitespace(cp)) {
+                if (lastBreak > lineStart) {
+                    // 退回到最后一个可换行的位置，它后面已经扫描过的字符移到下一行
+                    addLine(text, lineStart, lastBreak, lines);
+                    lineWidth -= widthAtBreak;
+                    lineStart = lastBreak;
+                }
+                if (lineWidth + advance > maxWidth && i > lineStart) {
+                    // 行内没有可换行的位置（或剩下的单词仍然太长）：在当前字符前断开
+                    addLine(text, lineStart, i, lines);
+                    lineWidth = 0;
+                    lineStart = i;
+                }
+            }
+
+            lineWidth += advance;
+            if (next < end && canBreakBetween(cp, text.codePointAt(next))) {
+                lastBreak = next;
+                widthAtBreak = lineWidth;
+            }
+            i = next;
+        }
+        addLine(text, lineStart, end, lines);
+    }
+
+    // 去掉行尾空格后加入结果
+    private static void addLine(String text, int start, int end, List<String> lines) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        lines.add(text.substring(start, end));
+    }
+
+    private static boolean canBreakBetween(int before, int after) {
+        if (NO_LINE_START.indexOf(after) >= 0 || NO_LINE_END.indexOf(before) >= 0) {
+            return false;
+        }
+        if (Character.isWhitespace(before)) {
+            return !Character.isWhitespace(after);
+        }
+        if (before == '-' && Character.isLetter(after)) {
+            return true;
+        }
+        return isCJK(before) || isCJK(after);
+    }
+
+    private static boolean isCJK(int cp) {
+        if (Character.isIdeographic(cp)) {
+            return true;
+        }
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(cp);
+        return block == Character.UnicodeBlock.HIRAGANA
+            || block == Character.UnicodeBlock.KATAKANA
+            || block == Character.UnicodeBlock.HANGUL_SYLLABLES
+            || block == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+            || block == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS;
+    }
+}
@@ -1,20 +1,51 @@
 package com.myppt.view;
 
 import javax.swing.JPanel;
+import javax.swing.Timer;
 import com.myppt.model.Presentation;
 import com.myppt.model.Slide;
 import com.myppt.model.AbstractSlideObject;
+import com.myppt.model.DecodedImageCache;
+import com.myppt.model.ImageBlob;
+import com.myppt.view.render.DisplayItem;
+import com.myppt.view.render.DisplayList;
+import com.myppt.view.render.Graphics2DBackend;
 
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class CanvasPanel extends JPanel {
     private Presentation presentation;
     
     private double scale = 1.0;
 
+    // 场景：未选中的对象，分为选中对象下面和上面两层，按块缓存画好的位图（CanvasTileCache）。
+    // 选中、拖动、缩放对象以及滚动画布时只需贴图并实时画出选中的对象，不必重画整页
+    private final CanvasTileCache tileCache;
+    private Slide sceneSlide;
+    private long sceneGeneration;
+    private CanvasTileCache.Scene belowScene;
+    private CanvasTileCache.Scene aboveScene;
+
+    // 连续缩放（Ctrl+滚轮）期间的预览：缩放开始时画面的一份拷贝，按新比例拉伸显示；
+    // 停止滚动 SETTLE_DELAY_MS 毫秒后才按最终比例正式绘制
+    private static final int SETTLE_DELAY_MS = 200;
+    private final Timer settleTimer;
+    private BufferedImage previewFrame;
+    private Rectangle previewArea;   // 拷贝时的视口（画布坐标）
+    private double previewScale;     // 拷贝时的缩放比例
+    private double previewDeviceScale;
+    private boolean previewing;
+    private double lastDeviceScale = 1.0;
+
     // [!] 核心修改: 定义一个巨大的虚拟画布尺寸
     public static final int VIRTUAL_CANVAS_WIDTH = 10000;
     public static final int VIRTUAL_CANVAS_HEIGHT = 10000;
@@ -23,6 +54,9 @@ public class CanvasPanel extends JPanel {
         this.presentation = presentation;
         // this.currentSlideIndex = 0;
         setBackground(Color.LIGHT_GRAY);
+        this.tileCache = new CanvasTileCache(this::repaint, Color.LIGHT_GRAY);
+        this.settleTimer = new Timer(SETTLE_DELAY_MS, e -> endZoomPreview());
+        this.settleTimer.setRepeats(false);
     }
 
     // [!] 新增: 设置一个新的数据模型
@@ -31,12 +65,97 @@ public class CanvasPanel extends JPanel {
     }
 
     public void setScale(double scale) {
+        endZoomPreview();
         this.scale = scale;
         // [!] 修改点: 当缩放时，需要 revalidate 以更新滚动条
         this.revalidate();
         this.repaint();
     }
 
+    /**
+     * 连续缩放中的一步（Ctrl+滚轮）：立即显示上一帧按新比例拉伸后的画面，
+     * 不为中间的缩放比例绘制；停止缩放一段时间后再按最终比例正式绘制。
+     */
+    public void zoomWithPreview(double scale) {
+        if (!previewing) {
+            capturePreviewFrame();
+            // 此前安排的后台绘制都是旧比例的，取消掉，让出工作线程给最终比例
+            tileCache.cancelPending();
+            previewing = true;
+        }
+        this.scale = scale;
+        this.revalidate();
+        this.repaint();
+        settleTimer.restart();
+    }
+
+    // 缩放停止：丢掉预览画面，按当前比例正式绘制（缺少的块先用缩放前的块顶替，再逐块变清晰）
+    private void endZoomPreview() {
+        settleTimer.stop();
+        if (previewing) {
+            previewing = false;
+            previewFrame = null;
+            repaint();
+        }
+    }
+
+    // 把当前视口按当前比例画到一张位图上（块都已缓存，只是贴图）
+    private void capturePreviewFrame() {
+        Rectangle area = getVisibleRect();
+        if (area.isEmpty()) {
+            previewFrame = null;
+            return;
+        }
+        double deviceScale = lastDeviceScale;
+        BufferedImage frame = new BufferedImage((int) Math.ceil(area.width * deviceScale),
+            (int) Math.ceil(area.height * deviceScale), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        g2d.scale(deviceScale, deviceScale);
+        g2d.translate(-area.x, -area.y);
+        g2d.clipRect(area.x, area.y, area.width, area.height);
+        paintComponent(g2d);
+        g2d.dispose();
+        previewFrame = frame;
+        previewArea = area;
+        previewScale = scale;
+        previewDeviceScale = deviceScale;
+    }
+
+    private void paintPreview(Graphics2D g2d) {
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g2d.setColor(getBackground());
+        g2d.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (previewFrame == null) {
+            return;
+        }
+        // 拷贝中的一点在虚拟画布上的位置不变，画布坐标随缩放比例等比变化
+        double ratio = scale / previewScale;
+        Graphics2D g = (Graphics2D) g2d.create();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        java.awt.geom.AffineTransform at =
+            java.awt.geom.AffineTransform.getTranslateInstance(previewArea.x * ratio, previewArea.y * ratio);
+        at.scale(ratio / previewDeviceScale, ratio / previewDeviceScale);
+        g.drawImage(previewFrame, at, null);
+        g.dispose();
+    }
+
+    /**
+     * 只重绘页面上的一块区域（页面坐标），例如拖动对象时新旧位置的并集。
+     * 区域按当前缩放换算成画布上的像素，并向外多取 1 像素以免取整后留下残影。
+     */
+    public void repaintSlideRegion(Rectangle slideRegion) {
+        int pageX = (VIRTUAL_CANVAS_WIDTH - Slide.PAGE_WIDTH) / 2;
+        int pageY = (VIRTUAL_CANVAS_HEIGHT - Slide.PAGE_HEIGHT) / 2;
+        int left = (int) Math.floor((pageX + slideRegion.x) * scale) - 1;
+        int top = (int) Math.floor((pageY + slideRegion.y) * scale) - 1;
+        int right = (int) Math.ceil((pageX + slideRegion.x + slideRegion.width) * scale) + 1;
+        int bottom = (int) Math.ceil((pageY + slideRegion.y + slideRegion.height) * scale) + 1;
+        repaint(left, top, right - left, bottom - top);
+    }
+
     // [!] 核心修改: 恢复 getPreferredSize，并使用巨大的虚拟尺寸乘以缩放比例
     @Override
     public Dimension getPreferredSize() {
@@ -46,14 +165,119 @@ public class CanvasPanel extends JPanel {
         );
     }
 
+    /**
+     * 图片在后台解码完成：只作废并重绘当前页上用到这张图片的区域，其他已经画好的块不受影响。
+     */
+    public void imageDecoded(ImageBlob blob) {
+        DisplayList displayList = DisplayList.of(presentation.getCurrentSlide());
+        for (int i = 0; i < displayList.size(); i++) {
+            DisplayItem item = displayList.get(i);
+            if (item.uses(blob)) {
+                Rectangle region = item.getPaintBounds();
+                tileCache.invalidate(region);
+                repaintSlideRegion(region);
+            }
+        }
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-
         Graphics2D g2d = (Graphics2D) g;
+        if (previewing) {
+            paintPreview(g2d);
+            return;
+        }
+        Slide currentSlide = presentation.getCurrentSlide(); // [!] 关键: 直接从模型获取当前页
+        DisplayList displayList = DisplayList.of(currentSlide);
+
+        // 选中的对象画在实时层。实时层是从最底层的选中对象到最顶层的选中对象这一段，
+        // 夹在中间的未选中对象也一起实时绘制，这样图层顺序与直接绘制完全相同
+        List<AbstractSlideObject> objects = currentSlide.getSlideObjects();
+        int liveFrom = objects.size();
+        int liveTo = objects.size();
+        for (int i = 0; i < objects.size(); i++) {
+            if (objects.get(i).isSelected()) {
+                if (liveFrom == objects.size()) {
+                    liveFrom = i;
+                }
+                liveTo = i + 1;
+            }
+        }
+        updateScenes(currentSlide, displayList, liveFrom, liveTo);
+
+        Rectangle clip = g2d.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        double deviceScale = g2d.getTransform().getScaleX();
+        lastDeviceScale = deviceScale;
+        DecodedImageCache.getInstance().beginFrame(); // 这一帧用到的图片不会被解码缓存淘汰
+
+        // 1. 下层：页面和选中对象下面的所有对象，整块贴图（底色也由它画出）
+        tileCache.paint(g2d, belowScene, scale, deviceScale, clip);
+
+        // 2. 实时层：只画与重绘区域相交的对象（通过页面的空间索引查找，结果仍按图层顺序）
         java.awt.geom.AffineTransform oldTransform = g2d.getTransform();
+        applyPageTransform(g2d, scale);
+        List<AbstractSlideObject> visibleObjects = Collections.emptyList();
+        if (liveFrom < liveTo) {
+            visibleObjects = currentSlide.getObjectsIn(g2d.getClipBounds());
+            displayList.replay(new Graphics2DBackend(g2d), visibleObjects, liveFrom, liveTo);
+        }
+        g2d.setTransform(oldTransform);
+
+        // 3. 上层：选中对象上面的对象（透明背景）
+        if (aboveScene.items.length > 0) {
+            tileCache.paint(g2d, aboveScene, scale, deviceScale, clip);
+        }
+
+        // 4. 选中框和控制点始终在最上面
+        applyPageTransform(g2d, scale);
+        paintSelection(g2d, visibleObjects);
+        g2d.setTransform(oldTransform);
+
+        // 视口周围一圈的块在后台预先画好，滚动时直接贴图
+        Rectangle around = getVisibleRect();
+        around.grow(CanvasTileCache.TILE_SIZE, CanvasTileCache.TILE_SIZE);
+        tileCache.prefetch(belowScene, scale, deviceScale, around);
+        if (aboveScene.items.length > 0) {
+            tileCache.prefetch(aboveScene, scale, deviceScale, around);
+        }
+    }
+
+    /**
+     * 检查上下两层包含的显示列表条目（按引用）是否变化，变化的那一层换成新版本，旧版本的块作废。
+     * 拖动或缩放选中对象只改变实时层的条目，两层的块都保持不变。
+     */
+    private void updateScenes(Slide slide, DisplayList displayList, int liveFrom, int liveTo) {
+        DisplayItem[] below = items(displayList, 0, liveFrom);
+        DisplayItem[] above = items(displayList, liveTo, displayList.size());
+        boolean sameSlide = slide == sceneSlide;
+        if (!sameSlide || !Arrays.equals(below, belowScene.items)) {
+            if (belowScene != null) {
+                tileCache.discard(belowScene);
+            }
+            belowScene = new CanvasTileCache.Scene(CanvasTileCache.LAYER_BELOW, ++sceneGeneration, below);
+        }
+        if (!sameSlide || !Arrays.equals(above, aboveScene.items)) {
+            if (aboveScene != null) {
+                tileCache.discard(aboveScene);
+            }
+            aboveScene = new CanvasTileCache.Scene(CanvasTileCache.LAYER_ABOVE, ++sceneGeneration, above);
+        }
+        sceneSlide = slide;
+    }
+
+    private static DisplayItem[] items(DisplayList displayList, int from, int to) {
+        DisplayItem[] items = new DisplayItem[to - from];
+        for (int i = from; i < to; i++) {
+            items[i - from] = displayList.get(i);
+        }
+        return items;
+    }
 
-        // --- [!] 核心修改: 计算页面在巨大画布中心的位置 ---
+    // --- [!] 核心修改: 计算页面在巨大画布中心的位置 ---
+    static void applyPageTransform(Graphics2D g2d, double scale) {
         // 1. 计算页面左上角在虚拟画布中的坐标
         int pageX = (VIRTUAL_CANVAS_WIDTH - Slide.PAGE_WIDTH) / 2;
         int pageY = (VIRTUAL_CANVAS_HEIGHT - Slide.PAGE_HEIGHT) / 2;
@@ -63,9 +287,10 @@ public class CanvasPanel extends JPanel {
         
         // 3. 再平移到页面的绘制起点
         g2d.translate(pageX, pageY);
+    }
 
-        // --- 在变换后的坐标系中进行绘制 (后续代码不变) ---
-
+    // 页面阴影、白色背景和边框（页面坐标）
+    static void paintPage(Graphics2D g2d) {
         g2d.setColor(Color.DARK_GRAY);
         g2d.fillRect(Slide.PAGE_WIDTH + 2, 5, 5, Slide.PAGE_HEIGHT);
         g2d.fillRect(5, Slide.PAGE_HEIGHT + 2, Slide.PAGE_WIDTH - 3, 5);
@@ -75,13 +300,14 @@ public class CanvasPanel extends JPanel {
         
         g2d.setColor(Color.BLACK);
         g2d.drawRect(0, 0, Slide.PAGE_WIDTH, Slide.PAGE_HEIGHT);
+    }
 
-        Slide currentSlide = presentation.getCurrentSlide(); // [!] 关键: 直接从模型获取当前页
-        for (AbstractSlideObject object : currentSlide.getSlideObjects()) {
-            object.draw(g2d);
+    private void paintSelection(Graphics2D g2d, List<AbstractSlideObject> visibleObjects) {
+        for (AbstractSlideObject object : visibleObjects) {
+            if (object.isSelected()) {
+                object.drawSelection(g2d);
+            }
         }
-        
-        g2d.setTransform(oldTransform);
     }
 
     public void setCursor(int crosshairCursor) {
@@ -0,0 +1,501 @@
+package com.myppt.view;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+import com.myppt.model.Slide;
+import com.myppt.view.render.DisplayItem;
+import com.myppt.view.render.Graphics2DBackend;
+
+/**
+ * 编辑区场景图的分块缓存。
+ * <p>
+ * 画布按固定大小（{@link #TILE_SIZE}，画布逻辑像素）切成方块，每块画好的位图以
+ * （图层、场景版本、缩放比例、设备缩放、块坐标）为键，保存在按字节数限额的 LRU 缓存中。
+ * 滚动画布时只需把已有的块贴到屏幕上；视口周围一圈的块在后台线程上预先画好。
+ * 缩放之后，新比例的块还没有画好时先把上一个比例的块拉伸顶替，并在后台画新块，
+ * 画好后只重绘这一块，画面逐步变清晰。
+ * <p>
+ * 块的内容来自显示列表的条目（不可变），所以可以在工作线程上重放，不会读到正在编辑的对象。
+ * 除工作线程内部外，所有方法只在事件分发线程上调用。
+ */
+final class CanvasTileCache {
+    /** 块边长（画布逻辑像素） */
+    static final int TILE_SIZE = 256;
+
+    static final int LAYER_BELOW = 0; // 页面和选中对象下面的对象（不透明）
+    static final int LAYER_ABOVE = 1; // 选中对象上面的对象（透明背景）
+
+    private static final long MAX_BYTES = 48L * 1024 * 1024;
+    private static final int MAX_SPARE_TILES = 32;
+
+    private static final int PRIORITY_VISIBLE = 0;
+    private static final int PRIORITY_PREFETCH = 1;
+
+    private final Map<Key, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    // 淘汰下来的位图，画新块时重复使用，避免反复分配
+    private final Deque<BufferedImage> spare = new ArrayDeque<>();
+    private final Set<Key> pending = new HashSet<>();
+
+    private final ThreadPoolExecutor workers;
+    private final AtomicLong sequence = new AtomicLong();
+    // 每次取消时加一；工作线程开始绘制前核对，取消前安排的任务直接放弃
+    private volatile long epoch;
+    // 每次局部作废时加一；作废之前开始的后台绘制可能画的是旧的样子，完成后不再收下
+    private long invalidations;
+    private final Consumer<Rectangle> repaintTile;
+    private final Color background;
+
+    // 最近一次绘制所用的缩放比例，以及换到它之前的比例（用来找顶替的旧块）
+    private double currentScale;
+    private double previousScale;
+
+    /**
+     * @param repaintTile 后台画好一块后调用，参数是这一块在画布上的区域
+     * @param background 页面外的画布底色
+     */
+    CanvasTileCache(Consumer<Rectangle> repaintTile, Color background) {
+        this.repaintTile = repaintTile;
+        this.background = background;
+        int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+        workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "MyPPT-CanvasTile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 一个图层在某一时刻的内容：按图层顺序排列的显示列表条目。
+     * 条目有任何变化时由 CanvasPanel 创建新的 Scene（版本号递增），旧版本的块随之作废。
+     */
+    static final class Scene {
+        final int layer;
+        final long generation;
+        final DisplayItem[] items;
+        // 页面和所有条目覆盖的区域（页面坐标），之外的块只有底色
+        final Rectangle contentBounds;
+
+        Scene(int layer, long generation, DisplayItem[] items) {
+            this.layer = layer;
+            this.generation = generation;
+            this.items = items;
+            Rectangle bounds = layer == LAYER_BELOW
+                ? new Rectangle(0, 0, Slide.PAGE_WIDTH + 8, Slide.PAGE_HEIGHT + 8) // 含页面阴影
+                : new Rectangle();
+            for (DisplayItem item : items) {
+                if (bounds.isEmpty()) {
+                    bounds = item.getPaintBounds();
+                } else {
+                    bounds.add(item.getPaintBounds());
+                }
+            }
+            this.contentBounds = bounds;
+        }
+    }
+
+    /**
+     * 把场景中与 clip（画布坐标）相交的块贴到 g2d 上。
+     * 缺少的块优先用上一个缩放比例的块拉伸顶替并交给后台绘制；没有可顶替的块时当场画好。
+     */
+    void paint(Graphics2D g2d, Scene scene, double scale, double deviceScale, Rectangle clip) {
+        if (scale != currentScale) {
+            previousScale = currentScale;
+            currentScale = scale;
+        }
+        Rectangle content = toCanvas(scene.contentBounds, scale);
+        int firstX = Math.floorDiv(clip.x, TILE_SIZE);
+        int firstY = Math.floorDiv(clip.y, TILE_SIZE);
+        int lastX = Math.floorDiv(clip.x + clip.width - 1, TILE_SIZE);
+        int lastY = Math.floorDiv(clip.y + clip.height - 1, TILE_SIZE);
+        for (int ty = firstY; ty <= lastY; ty++) {
+            for (int tx = firstX; tx <= lastX; tx++) {
+                Rectangle tileRect = new Rectangle(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                if (!tileRect.intersects(content)) {
+                    // 空白的块不缓存：下层只有底色，上层什么也没有
+                    if (scene.layer == LAYER_BELOW) {
+                        g2d.setColor(background);
+                        g2d.fillRect(tileRect.x, tileRect.y, tileRect.width, tileRect.height);
+                    }
+                    continue;
+                }
+                Key key = new Key(scene.layer, scene.generation, scale, deviceScale, tx, ty);
+                BufferedImage image = tiles.get(key);
+                if (image == null) {
+                    if (paintFallback(g2d, scene, key, tileRect)) {
+                        request(scene, key, PRIORITY_VISIBLE);
+                        continue;
+                    }
+                    image = render(scene, key, takeSpare(key));
+                    put(key, image);
+                }
+                blit(g2d, image, tileRect, deviceScale);
+            }
+        }
+    }
+
+    /**
+     * 在后台画好 area（画布坐标，通常是视口向外扩一圈）内还没有缓存的块，滚动到那里时直接贴图。
+     */
+    void prefetch(Scene scene, double scale, double deviceScale, Rectangle area) {
+        Rectangle content = toCanvas(scene.contentBounds, scale);
+        int firstX = Math.floorDiv(area.x, TILE_SIZE);
+        int firstY = Math.floorDiv(area.y, TILE_SIZE);
+        int lastX = Math.floorDiv(area.x + area.width - 1, TILE_SIZE);
+        int lastY = Math.floorDiv(area.y + area.height - 1, TILE_SIZE);
+        for (int ty = firstY; ty <= lastY; ty++) {
+            for (int tx = firstX; tx <= lastX; tx++) {
+                Rectangle tileRect = new Rectangle(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                Key key = new Key(scene.layer, scene.generation, scale, deviceScale, tx, ty);
+                if (tileRect.intersects(content) && !tiles.containsKey(key)) {
+                    request(scene, key, PRIORITY_PREFETCH);
+                }
+            }
+        }
+    }
+
+    /**
+     * 场景换了新版本后，丢掉旧版本的块，位图留作重复使用。
+     */
+    void discard(Scene scene) {
+        Iterator<Map.Entry<Key, BufferedImage>> it = tiles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, BufferedImage> entry = it.next();
+            Key key = entry.getKey();
+            if (key.layer == scene.layer && key.generation == scene.generation) {
+                it.remove();
+                release(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 页面上一块区域（页面坐标）的绘制结果变了，但显示列表的条目没有变（例如其中的图片刚解码完成），
+     * 丢掉所有与它相交的块（各个图层、各个缩放比例），下次绘制时重新画。
+     */
+    void invalidate(Rectangle pageRegion) {
+        invalidations++;
+        Iterator<Map.Entry<Key, BufferedImage>> it = tiles.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, BufferedImage> entry = it.next();
+            Key key = entry.getKey();
+            Rectangle tileRect = new Rectangle(key.tx * TILE_SIZE, key.ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+            if (toCanvas(pageRegion, key.scale).intersects(tileRect)) {
+                it.remove();
+                release(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 取消所有还没有完成的后台绘制（排队的任务移出队列，正在画的任务结果作废），
+     * 例如开始连续缩放时，此前各个缩放比例的块已经用不上了。
+     */
+    void cancelPending() {
+        epoch++;
+        workers.getQueue().removeIf(task -> task instanceof RenderTask && release((RenderTask) task));
+        pending.clear();
+    }
+
+    // 被取消的任务预先领取的位图还给备用池
+    private boolean release(RenderTask task) {
+        if (task.target != null && spare.size() < MAX_SPARE_TILES) {
+            spare.push(task.target);
+        }
+        return true;
+    }
+
+    // 用上一个缩放比例的块拉伸出这一块；只要缺一块就放弃（不留空洞），返回是否画成
+    private boolean paintFallback(Graphics2D g2d, Scene scene, Key key, Rectangle tileRect) {
+        if (previousScale <= 0 || previousScale == key.scale) {
+            return false;
+        }
+        double ratio = key.scale / previousScale;
+        Rectangle content = toCanvas(scene.contentBounds, previousScale);
+        int firstX = (int) Math.floor(tileRect.x / ratio / TILE_SIZE);
+        int firstY = (int) Math.floor(tileRect.y / ratio / TILE_SIZE);
+        int lastX = (int) Math.floor((tileRect.x + tileRect.width) / ratio / TILE_SIZE);
+        int lastY = (int) Math.floor((tileRect.y + tileRect.height) / ratio / TILE_SIZE);
+        BufferedImage[] sources = new BufferedImage[(lastX - firstX + 1) * (lastY - firstY + 1)];
+        int n = 0;
+        for (int ty = firstY; ty <= lastY; ty++) {
+            for (int tx = firstX; tx <= lastX; tx++) {
+                Rectangle oldRect = new Rectangle(tx * TILE_SIZE, ty * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                BufferedImage image = null;
+                if (oldRect.intersects(content)) {
+                    image = tiles.get(new Key(key.layer, key.generation, previousScale, key.deviceScale, tx, ty));
+                    if (image == null) {
+                        return false;
+                    }
+                }
+                sources[n++] = image;
+            }
+        }
+
+        Graphics2D g = (Graphics2D) g2d.create();
+        g.clipRect(tileRect.x, tileRect.y, tileRect.width, tileRect.height);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        if (key.layer == LAYER_BELOW) {
+            g.setColor(background);
+            g.fillRect(tileRect.x, tileRect.y, tileRect.width, tileRect.height);
+        }
+        n = 0;
+        for (int ty = firstY; ty <= lastY; ty++) {
+            for (int tx = firstX; tx <= lastX; tx++) {
+                BufferedImage image = sources[n++];
+                if (image != null) {
+                    AffineTransform at = AffineTransform.getTranslateInstance(
+                        tx * TILE_SIZE * ratio, ty * TILE_SIZE * ratio);
+                    at.scale(ratio / key.deviceScale, ratio / key.deviceScale);
+                    g.drawImage(image, at, null);
+                }
+            }
+        }
+        g.dispose();
+        return true;
+    }
+
+    private void request(Scene scene, Key key, int priority) {
+        if (!pending.add(key)) {
+            return; // 已经在排队或正在绘制
+        }
+        workers.execute(new RenderTask(scene, key, priority, sequence.incrementAndGet(), epoch, invalidations,
+            takeSpare(key)));
+    }
+
+    // 事件分发线程：收下后台画好的块，仍是当前缩放比例时重绘这一块
+    private void finish(RenderTask task, BufferedImage image) {
+        if (task.epoch != epoch) {
+            return; // 已被取消，同一块可能已经重新安排
+        }
+        pending.remove(task.key);
+        if (image == null) {
+            return;
+        }
+        if (task.invalidations != invalidations) {
+            // 绘制期间有区域作废，这一块可能是旧的样子：不收下，重绘时重新请求
+            if (spare.size() < MAX_SPARE_TILES) {
+                spare.push(image);
+            }
+        } else {
+            put(task.key, image);
+        }
+        if (task.key.scale == currentScale) {
+            repaintTile.accept(new Rectangle(task.key.tx * TILE_SIZE, task.key.ty * TILE_SIZE, TILE_SIZE, TILE_SIZE));
+        }
+    }
+
+    private void put(Key key, BufferedImage image) {
+        BufferedImage old = tiles.put(key, image);
+        bytes += sizeOf(image);
+        if (old != null) {
+            bytes -= sizeOf(old);
+        }
+        // 超出限额时淘汰最久没有用到的块
+        Iterator<BufferedImage> it = tiles.values().iterator();
+        while (bytes > MAX_BYTES && it.hasNext()) {
+            BufferedImage eldest = it.next();
+            it.remove();
+            release(eldest);
+        }
+    }
+
+    private void release(BufferedImage image) {
+        bytes -= sizeOf(image);
+        if (spare.size() < MAX_SPARE_TILES) {
+            spare.push(image);
+        }
+    }
+
+    // 取一张尺寸和类型都合适的旧位图，没有时返回 null（由绘制时新建）
+    private BufferedImage takeSpare(Key key) {
+        int size = tilePixels(key.deviceScale);
+        int type = imageType(key.layer);
+        for (Iterator<BufferedImage> it = spare.iterator(); it.hasNext(); ) {
+            BufferedImage image = it.next();
+            if (image.getWidth() == size && image.getType() == type) {
+                it.remove();
+                return image;
+            }
+        }
+        return null;
+    }
+
+    // --- 块的绘制（事件分发线程或工作线程） ---
+
+    private BufferedImage render(Scene scene, Key key, BufferedImage image) {
+        int size = tilePixels(key.deviceScale);
+        if (image == null) {
+            image = new BufferedImage(size, size, imageType(key.layer));
+        }
+        Graphics2D g2d = image.createGraphics();
+        if (key.layer == LAYER_BELOW) {
+            g2d.setColor(background);
+            g2d.fillRect(0, 0, size, size);
+        } else {
+            g2d.setComposite(AlphaComposite.Clear);
+            g2d.fillRect(0, 0, size, size);
+            g2d.setComposite(AlphaComposite.SrcOver);
+        }
+        g2d.scale(key.deviceScale, key.deviceScale);
+        g2d.translate(-key.tx * TILE_SIZE, -key.ty * TILE_SIZE);
+        CanvasPanel.applyPageTransform(g2d, key.scale);
+        if (key.layer == LAYER_BELOW) {
+            CanvasPanel.paintPage(g2d);
+        }
+        Rectangle region = toPage(new Rectangle(key.tx * TILE_SIZE, key.ty * TILE_SIZE, TILE_SIZE, TILE_SIZE), key.scale);
+        Graphics2DBackend backend = new Graphics2DBackend(g2d);
+        for (DisplayItem item : scene.items) {
+            if (item.intersects(region)) {
+                item.replay(backend);
+            }
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    private static void blit(Graphics2D g2d, BufferedImage image, Rectangle tileRect, double deviceScale) {
+        AffineTransform at = AffineTransform.getTranslateInstance(tileRect.x, tileRect.y);
+        at.scale(1 / deviceScale, 1 / deviceScale);
+        g2d.drawImage(image, at, null);
+    }
+
+    private static int tilePixels(double deviceScale) {
+        return (int) Math.ceil(TILE_SIZE * deviceScale);
+    }
+
+    private static int imageType(int layer) {
+        return layer == LAYER_BELOW ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    // 页面坐标的区域换算成画布坐标（向外取整）
+    private static Rectangle toCanvas(Rectangle page, double scale) {
+        int pageX = (CanvasPanel.VIRTUAL_CANVAS_WIDTH - Slide.PAGE_WIDTH) / 2;
+        int pageY = (CanvasPanel.VIRTUAL_CANVAS_HEIGHT - Slide.PAGE_HEIGHT) / 2;
+        int left = (int) Math.floor((pageX + page.x) * scale) - 1;
+        int top = (int) Math.floor((pageY + page.y) * scale) - 1;
+        int right = (int) Math.ceil((pageX + page.x + page.width) * scale) + 1;
+        int bottom = (int) Math.ceil((pageY + page.y + page.height) * scale) + 1;
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    // 画布坐标的区域换算成页面坐标（向外取整）
+    private static Rectangle toPage(Rectangle canvas, double scale) {
+        int pageX = (CanvasPanel.VIRTUAL_CANVAS_WIDTH - Slide.PAGE_WIDTH) / 2;
+        int pageY = (CanvasPanel.VIRTUAL_CANVAS_HEIGHT - Slide.PAGE_HEIGHT) / 2;
+        int left = (int) Math.floor(canvas.x / scale) - pageX - 1;
+        int top = (int) Math.floor(canvas.y / scale) - pageY - 1;
+        int right = (int) Math.ceil((canvas.x + canvas.width) / scale) - pageX + 1;
+        int bottom = (int) Math.ceil((canvas.y + canvas.height) / scale) - pageY + 1;
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * 一块的后台绘制。可见的块先于预取的块，同一优先级按请求顺序。
+     */
+    private final class RenderTask implements Runnable, Comparable<RenderTask> {
+        final Scene scene;
+        final Key key;
+        final int priority;
+        final long order;
+        final long epoch;
+        final long invalidations;
+        final BufferedImage target;
+
+        RenderTask(Scene scene, Key key, int priority, long order, long epoch, long invalidations,
+                   BufferedImage target) {
+            this.scene = scene;
+            this.key = key;
+            this.priority = priority;
+            this.order = order;
+            this.epoch = epoch;
+            this.invalidations = invalidations;
+            this.target = target;
+        }
+
+        @Override
+        public void run() {
+            if (epoch != CanvasTileCache.this.epoch) {
+                return; // 已被取消
+            }
+            BufferedImage image = null;
+            try {
+                image = render(scene, key, target);
+            } catch (RuntimeException e) {
+                // 丢弃这次结果，下次绘制时会重新请求
+                System.err.println("绘制画布分块失败: " + e.getMessage());
+            }
+            BufferedImage result = image;
+            SwingUtilities.invokeLater(() -> finish(this, result));
+        }
+
+        @Override
+        public int compareTo(RenderTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * 一块位图的全部决定因素。
+     */
+    private static final class Key {
+        final int layer;
+        final long generation;
+        final double scale;
+        final double deviceScale;
+        final int tx;
+        final int ty;
+
+        Key(int layer, long generation, double scale, double deviceScale, int tx, int ty) {
+            this.layer = layer;
+            this.generation = generation;
+            this.scale = scale;
+            this.deviceScale = deviceScale;
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return layer == other.layer && generation == other.generation
+                && scale == other.scale && deviceScale == other.deviceScale
+                && tx == other.tx && ty == other.ty;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layer, generation, scale, deviceScale, tx, ty);
+        }
+    }
+}
@@ -15,8 +15,11 @@ import java.awt.event.MouseEvent;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
+import com.myppt.model.DecodedImageCache;
 import com.myppt.model.Presentation;
 import com.myppt.model.Slide;
+import com.myppt.view.render.DisplayList;
+import com.myppt.view.render.Graphics2DBackend;
 
 public class PlayerFrame extends JFrame {
     private Presentation presentation;
@@ -160,10 +163,9 @@ public class PlayerFrame extends JFrame {
             //设置剪裁区域
             g2dCopy.setClip(0, 0, Slide.PAGE_WIDTH, Slide.PAGE_HEIGHT);
 
-            // 4. 绘制所有对象
-            for (com.myppt.model.AbstractSlideObject object : currentSlide.getSlideObjects()) {
-                object.draw(g2dCopy);
-            }
+            // 4. 重放页面的显示列表（放映时不画选中框），这一帧用到的图片不会被解码缓存淘汰
+            DecodedImageCache.getInstance().beginFrame();
+            DisplayList.of(currentSlide).replay(new Graphics2DBackend(g2dCopy));
             g2dCopy.dispose();
         }
     }
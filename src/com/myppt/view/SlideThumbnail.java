@@ -2,15 +2,18 @@ package com.myppt.view;
 
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
+import javax.swing.border.Border;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 
 import com.myppt.model.Slide;
 
 /**
- * 一个用于在左侧面板中显示单个幻灯片缩略图的组件。
+ * 在左侧缩略图列表中绘制单个幻灯片缩略图的组件。
+ * ThumbnailPanel 用同一个实例依次绘制每个可见的格子，绘制前通过 {@link #setSlide} 指定页面和页码。
  */
 public class SlideThumbnail extends JPanel {
     private Slide slide;
@@ -19,46 +22,53 @@ public class SlideThumbnail extends JPanel {
     private static final int THUMB_WIDTH = 180;
     private static final int THUMB_HEIGHT = 101; // 180 * 9/16
 
+    // 每个格子都要切换边框，共用两个边框实例
+    private static final Border SELECTED_BORDER = BorderFactory.createLineBorder(Color.BLUE, 3);
+    private static final Border NORMAL_BORDER = BorderFactory.createLineBorder(Color.GRAY);
+
     public static int getThumbWidth() {
         return THUMB_WIDTH;
     }
 
-    public SlideThumbnail(Slide slide, int pageNumber) {
-        this.slide = slide;
-        this.pageNumber = pageNumber;
-        
+    public static int getThumbHeight() {
+        return THUMB_HEIGHT;
+    }
+
+    public SlideThumbnail() {
         Dimension size = new Dimension(THUMB_WIDTH, THUMB_HEIGHT + 20); // 加上下方页码的空间
         setPreferredSize(size);
         setMinimumSize(size);
         setMaximumSize(size);
-        setBorder(BorderFactory.createLineBorder(Color.GRAY));
+        setBorder(NORMAL_BORDER);
+    }
+
+    /**
+     * 指定接下来要绘制的页面和页码。
+     */
+    public void setSlide(Slide slide, int pageNumber) {
+        this.slide = slide;
+        this.pageNumber = pageNumber;
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        if (slide == null) {
+            return;
+        }
         Graphics2D g2d = (Graphics2D) g.create();
 
-        // 开启抗锯齿，让缩略图更平滑
-        g2d.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setRenderingHint(java.awt.RenderingHints.KEY_RENDERING, java.awt.RenderingHints.VALUE_RENDER_QUALITY);
-
-        // 绘制白色背景
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(0, 0, THUMB_WIDTH, THUMB_HEIGHT);
-        g2d.setColor(Color.BLACK);
-        g2d.drawRect(0, 0, THUMB_WIDTH - 1, THUMB_HEIGHT - 1);
-        
-        // --- 绘制缩略图内容 ---
-        double scaleX = (double) THUMB_WIDTH / Slide.PAGE_WIDTH;
-        double scaleY = (double) THUMB_HEIGHT / Slide.PAGE_HEIGHT;
-        g2d.scale(scaleX, scaleY);
-        
-        // 设置裁剪区域，防止内容画出缩略图边界
-        g2d.setClip(0, 0, Slide.PAGE_WIDTH, Slide.PAGE_HEIGHT);
-
-        for (com.myppt.model.AbstractSlideObject object : slide.getSlideObjects()) {
-            object.draw(g2d);
+        // 缩略图内容由 ThumbnailCache 在后台绘制，这里直接贴位图；第一次画好之前显示占位框
+        double deviceScale = g2d.getTransform().getScaleX();
+        BufferedImage thumbnail = ThumbnailCache.getInstance().get(slide, THUMB_WIDTH, THUMB_HEIGHT, deviceScale);
+        if (thumbnail != null) {
+            g2d.drawImage(thumbnail, 0, 0, THUMB_WIDTH, THUMB_HEIGHT, null);
+        } else {
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, THUMB_WIDTH, THUMB_HEIGHT);
+            g2d.setColor(Color.LIGHT_GRAY);
+            g2d.drawRect(0, 0, THUMB_WIDTH - 1, THUMB_HEIGHT - 1);
+            g2d.drawString("加载中…", THUMB_WIDTH / 2 - 20, THUMB_HEIGHT / 2);
         }
 
         g2d.dispose();
@@ -67,12 +77,8 @@ public class SlideThumbnail extends JPanel {
         g.setColor(Color.BLACK);
         g.drawString("第 " + this.pageNumber + " 页", 10, THUMB_HEIGHT + 15);
     }
-    
+
     public void setSelected(boolean selected) {
-        if (selected) {
-            setBorder(BorderFactory.createLineBorder(Color.BLUE, 3));
-        } else {
-            setBorder(BorderFactory.createLineBorder(Color.GRAY));
-        }
+        setBorder(selected ? SELECTED_BORDER : NORMAL_BORDER);
     }
-}
\ No newline at end of file
+}
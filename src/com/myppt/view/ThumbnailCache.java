@@ -0,0 +1,322 @@
+package com.myppt.view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+import com.myppt.model.AbstractSlideObject;
+import com.myppt.model.ImageBlob;
+import com.myppt.model.ImageObject;
+import com.myppt.model.ModelCodec;
+import com.myppt.model.Slide;
+import com.myppt.view.render.DisplayList;
+import com.myppt.view.render.Graphics2DBackend;
+
+/**
+ * 幻灯片缩略图的位图缓存（单例）。
+ * <p>
+ * 每页缓存一张已经画好的缩略图位图，只有当下列任何一项变化时才重新绘制：
+ * 页面内容版本号（Slide.getVersion）、页面上被选中的对象、缩略图大小、绘制比例（高分屏）。
+ * <p>
+ * 绘制在后台的工作线程池上进行：事件分发线程只把页面内容编码成快照（ModelCodec），
+ * 工作线程解码快照、按缩略图的尺寸同步解码其中的图片并画到离屏位图上，完成后回到事件分发线程替换缓存条目，
+ * 并通知监听器重绘。缩略图用的小尺寸图片不放入全局的解码缓存（DecodedImageCache），不会挤掉编辑区的图片。位图还没画好时 {@link #get} 返回旧的位图或 null（由调用者画占位框）。
+ * 正在显示的缩略图（在 paintComponent 中请求的）优先于后台预取的缩略图。
+ * <p>
+ * 除工作线程内部外，所有方法只在事件分发线程上调用。
+ * 缓存以 Slide 为弱引用键，页面被删除并回收后对应的位图自动释放。
+ */
+public final class ThumbnailCache {
+    private static final ThumbnailCache instance = new ThumbnailCache();
+
+    private static final int PRIORITY_VISIBLE = 0;
+    private static final int PRIORITY_PREFETCH = 1;
+
+    // 有界的工作线程池，按优先级和请求顺序取任务
+    private final ThreadPoolExecutor workers;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Map<Slide, Entry> entries = new WeakHashMap<>();
+    private final Map<Slide, RenderTask> pending = new WeakHashMap<>();
+    private final List<Consumer<Slide>> updateListeners = new CopyOnWriteArrayList<>();
+    private double lastDeviceScale = 1.0;
+
+    private ThumbnailCache() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "MyPPT-Thumbnail");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    public static ThumbnailCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * 注册缩略图位图更新后的监听器（在事件分发线程上调用）。
+     */
+    public void addUpdateListener(Consumer<Slide> listener) {
+        updateListeners.add(listener);
+    }
+
+    /**
+     * 返回页面当前可用的缩略图位图。内容有变化时安排后台重新绘制（优先级最高），
+     * 在新位图完成之前返回旧的位图。
+     * @param width 缩略图宽度（逻辑像素）
+     * @param height 缩略图高度（逻辑像素）
+     * @param deviceScale 设备缩放比例，高分屏上大于 1，位图按实际像素绘制
+     * @return 还没有任何位图时返回 null
+     */
+    public BufferedImage get(Slide slide, int width, int height, double deviceScale) {
+        lastDeviceScale = deviceScale;
+        Key key = Key.of(slide, width, height, deviceScale);
+        Entry entry = entries.get(slide);
+        if (entry == null || !entry.key.equals(key)) {
+            request(slide, key, PRIORITY_VISIBLE);
+        }
+        return entry == null ? null : entry.image;
+    }
+
+    /**
+     * 为还没有缩略图的页面安排低优先级的后台绘制，例如缩略图列表可见范围附近的页面。
+     */
+    public void prefetch(Slide slide, int width, int height) {
+        if (!entries.containsKey(slide)) {
+            request(slide, Key.of(slide, width, height, lastDeviceScale), PRIORITY_PREFETCH);
+        }
+    }
+
+    private void request(Slide slide, Key key, int priority) {
+        RenderTask task = pending.get(slide);
+        if (task != null) {
+            if (task.key.equals(key) && task.priority <= priority) {
+                return; // 已经在排队
+            }
+            if (workers.getQueue().remove(task)) {
+                pending.remove(slide);
+            } else if (task.key.equals(key)) {
+                return; // 正在绘制
+            }
+        }
+        task = new RenderTask(slide, key, priority, sequence.incrementAndGet(), snapshot(slide));
+        pending.put(slide, task);
+        workers.execute(task);
+    }
+
+    /**
+     * 在事件分发线程上拍下页面内容的快照。尚未加载的页面返回 null，由工作线程从文件中另外读取一份
+     * （Slide.loadDetached，不放入页面），这样打开大文件时事件分发线程不会因为读取页面而卡住，
+     * 工作线程也不会与事件分发线程同时访问页面的对象列表。
+     */
+    private static byte[] snapshot(Slide slide) {
+        if (!slide.isLoaded()) {
+            return null;
+        }
+        return ModelCodec.encode(slide.getSlideObjects());
+    }
+
+    // 事件分发线程：用新画好的位图替换缓存条目
+    private void finish(RenderTask task, BufferedImage image) {
+        if (pending.get(task.slide) == task) {
+            pending.remove(task.slide);
+        }
+        if (image == null) {
+            return;
+        }
+        entries.put(task.slide, new Entry(image, task.key));
+        for (Consumer<Slide> listener : updateListeners) {
+            listener.accept(task.slide);
+        }
+    }
+
+    // --- 工作线程 ---
+
+    private static BufferedImage render(Slide slide, byte[] snapshot, Key key) throws IOException {
+        List<AbstractSlideObject> objects;
+        if (snapshot != null) {
+            objects = ModelCodec.decode(snapshot);
+        } else {
+            try {
+                objects = slide.loadDetached();
+            } catch (IOException e) {
+                // 与编辑区一致，读取失败的页面显示为空白
+                System.err.println("读取缩略图页面失败: " + e.getMessage());
+                objects = new ArrayList<>();
+            }
+        }
+        AbstractSlideObject selected = key.selectedIndex >= 0 && key.selectedIndex < objects.size()
+            ? objects.get(key.selectedIndex) : null;
+
+        int pixelWidth = (int) Math.ceil(key.width * key.deviceScale);
+        int pixelHeight = (int) Math.ceil(key.height * key.deviceScale);
+        Map<ImageBlob, Image> images = decodeImages(objects, (double) pixelWidth / Slide.PAGE_WIDTH);
+        BufferedImage image = new BufferedImage(pixelWidth, pixelHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+
+        // 开启抗锯齿，让缩略图更平滑
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.scale(key.deviceScale, key.deviceScale);
+
+        // 绘制白色背景
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, key.width, key.height);
+        g2d.setColor(Color.BLACK);
+        g2d.drawRect(0, 0, key.width - 1, key.height - 1);
+
+        // --- 绘制缩略图内容 ---
+        g2d.scale((double) key.width / Slide.PAGE_WIDTH, (double) key.height / Slide.PAGE_HEIGHT);
+        // 设置裁剪区域，防止内容画出缩略图边界
+        g2d.clipRect(0, 0, Slide.PAGE_WIDTH, Slide.PAGE_HEIGHT);
+        DisplayList.compile(objects).replay(new Graphics2DBackend(g2d, images));
+        if (selected != null) {
+            selected.drawSelection(g2d);
+        }
+
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * 在工作线程上按缩略图中的实际像素尺寸解码页面上的图片（同一张图片取最大的尺寸），缩略图中不出现占位框。
+     * 解码失败的图片不在结果中，绘制时画失败提示。
+     * @param pixelsPerUnit 页面坐标的一个单位在缩略图位图中的像素数
+     */
+    private static Map<ImageBlob, Image> decodeImages(List<AbstractSlideObject> objects, double pixelsPerUnit) {
+        Map<ImageBlob, Rectangle> sizes = new HashMap<>();
+        for (AbstractSlideObject object : objects) {
+            if (object instanceof ImageObject) {
+                ImageObject imageObject = (ImageObject) object;
+                Rectangle bounds = imageObject.getBounds();
+                sizes.merge(imageObject.getBlob(), new Rectangle(bounds.width, bounds.height),
+                    (a, b) -> new Rectangle(Math.max(a.width, b.width), Math.max(a.height, b.height)));
+            }
+        }
+        Map<ImageBlob, Image> images = new HashMap<>();
+        for (Map.Entry<ImageBlob, Rectangle> entry : sizes.entrySet()) {
+            Rectangle size = entry.getValue();
+            Image image = entry.getKey().decodeSubsampled(size.width * pixelsPerUnit, size.height * pixelsPerUnit);
+            if (image != null) {
+                images.put(entry.getKey(), image);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * 一次后台绘制。先按优先级、再按请求顺序执行。
+     */
+    private final class RenderTask implements Runnable, Comparable<RenderTask> {
+        final Slide slide;
+        final Key key;
+        final int priority;
+        final long order;
+        final byte[] snapshot;
+
+        RenderTask(Slide slide, Key key, int priority, long order, byte[] snapshot) {
+            this.slide = slide;
+            this.key = key;
+            this.priority = priority;
+            this.order = order;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void run() {
+            BufferedImage image = null;
+            try {
+                image = render(slide, snapshot, key);
+            } catch (IOException | RuntimeException e) {
+                // 页面在复制过程中被修改等情况：丢弃这次结果，下次重绘时会重新请求
+                System.err.println("绘制缩略图失败: " + e.getMessage());
+            }
+            BufferedImage result = image;
+            SwingUtilities.invokeLater(() -> finish(this, result));
+        }
+
+        @Override
+        public int compareTo(RenderTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * 决定缩略图是否需要重新绘制的全部因素。
+     */
+    private static final class Key {
+        final long version;
+        final int selectedIndex;
+        final int width;
+        final int height;
+        final double deviceScale;
+
+        private Key(long version, int selectedIndex, int width, int height, double deviceScale) {
+            this.version = version;
+            this.selectedIndex = selectedIndex;
+            this.width = width;
+            this.height = height;
+            this.deviceScale = deviceScale;
+        }
+
+        // 尚未加载的页面不可能有选中的对象，不为查找选中对象而加载页面
+        static Key of(Slide slide, int width, int height, double deviceScale) {
+            int selectedIndex = -1;
+            if (slide.isLoaded()) {
+                List<AbstractSlideObject> objects = slide.getSlideObjects();
+                for (int i = 0; i < objects.size(); i++) {
+                    if (objects.get(i).isSelected()) {
+                        selectedIndex = i;
+                        break;
+                    }
+                }
+            }
+            return new Key(slide.getVersion(), selectedIndex, width, height, deviceScale);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return version == k.version && selectedIndex == k.selectedIndex
+                && width == k.width && height == k.height && deviceScale == k.deviceScale;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(version) * 31 + selectedIndex;
+        }
+    }
+
+    private static final class Entry {
+        final BufferedImage image;
+        final Key key;
+
+        Entry(BufferedImage image, Key key) {
+            this.image = image;
+            this.key = key;
+        }
+    }
+}
@@ -1,24 +1,193 @@
 package com.myppt.view;
 
-import javax.swing.BoxLayout;
-import javax.swing.JPanel;
-import javax.swing.BorderFactory; 
+import javax.swing.AbstractListModel;
+import javax.swing.BorderFactory;
+import javax.swing.JList;
+import javax.swing.JViewport;
+import javax.swing.ListCellRenderer;
+import javax.swing.ListSelectionModel;
+import javax.swing.event.ChangeListener;
 
 import java.awt.Color;
+import java.awt.Component;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.myppt.model.Slide;
 
 /**
- * 左侧的缩略图容器面板。
- * 使用BoxLayout垂直排列所有缩略图。
+ * 左侧的缩略图列表。
+ * <p>
+ * 这是一个虚拟化的列表：不再为每一页创建一个组件，而是所有页面共用一个 SlideThumbnail 作为“图章”，
+ * 绘制时只对滚动窗格中可见的几页调用它，所以几百页的文件也只画（和请求缩略图）屏幕上的那几页。
+ * 页面列表变化时 {@link #setSlides(List, int)} 只比较出新增、删除或移动的那一段并更新，其余条目保持不变。
+ * 列表的选中项就是当前页，用户点击或用方向键切换时由外部注册的 ListSelectionListener 处理。
+ * 可见范围前后各 PREFETCH_MARGIN 页的缩略图在后台预先画好，滚动时随之向前后延伸；更远的页面滚动到时才画。
  */
-public class ThumbnailPanel extends JPanel {
+public class ThumbnailPanel extends JList<Slide> {
     private static final int PADDING = 5; // 定义一个常量用于边距和间距
-    
+    private static final int PREFETCH_MARGIN = 10; // 可见范围前后各预取多少页
+
+    private final SlideListModel slideModel;
+    // 滚动时把预取范围延伸到新的可见范围附近
+    private final ChangeListener scrollListener = e -> prefetchAroundVisible();
+
     public ThumbnailPanel() {
-        setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        this(new SlideListModel());
+    }
+
+    private ThumbnailPanel(SlideListModel model) {
+        super(model);
+        this.slideModel = model;
         setBackground(Color.DARK_GRAY);
-        //给整个面板添加一个内边距
+        //给整个列表添加一个内边距
         setBorder(BorderFactory.createEmptyBorder(PADDING, PADDING, PADDING, PADDING));
+        setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        // 所有格子大小相同：布局和滚动计算不必逐个测量
+        SlideThumbnail stamp = new SlideThumbnail();
+        setFixedCellWidth(stamp.getPreferredSize().width);
+        setFixedCellHeight(stamp.getPreferredSize().height);
+        setCellRenderer(new ThumbnailRenderer(stamp));
+        // 后台画好一张缩略图后，只重绘它所在的格子（不可见的页面不需要重绘）
+        ThumbnailCache.getInstance().addUpdateListener(this::repaintSlide);
+    }
+
+    /**
+     * 与演示文稿的页面列表同步。按对象身份比较，只替换首尾相同部分之间的那一段：
+     * 新建、删除一页或移动一页时只通知变化的区间，未变化的页面不会被重新创建或重新请求缩略图。
+     * @param slides 演示文稿当前的页面列表
+     * @param currentIndex 当前页下标，成为列表的选中项
+     */
+    public void setSlides(List<Slide> slides, int currentIndex) {
+        List<Slide> old = slideModel.slides;
+        int prefix = 0;
+        int max = Math.min(old.size(), slides.size());
+        while (prefix < max && old.get(prefix) == slides.get(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && old.get(old.size() - 1 - suffix) == slides.get(slides.size() - 1 - suffix)) {
+            suffix++;
+        }
+        List<Slide> inserted = slides.subList(prefix, slides.size() - suffix);
+        slideModel.replace(prefix, old.size() - suffix, inserted);
+
+        if (getSelectedIndex() != currentIndex) {
+            if (currentIndex >= 0 && currentIndex < slides.size()) {
+                setSelectedIndex(currentIndex);
+                ensureIndexIsVisible(currentIndex);
+            } else {
+                clearSelection();
+            }
+        }
+
+        // 只预取可见范围附近的页面；打开几百页的文件时不必一次排队画完所有缩略图
+        prefetchAroundVisible();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (getParent() instanceof JViewport) {
+            ((JViewport) getParent()).addChangeListener(scrollListener);
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        if (getParent() instanceof JViewport) {
+            ((JViewport) getParent()).removeChangeListener(scrollListener);
+        }
+        super.removeNotify();
     }
-    
 
-}
\ No newline at end of file
+    /**
+     * 为可见范围前后各 PREFETCH_MARGIN 页安排后台绘制缩略图，滚动到它们时多半已经可用。
+     * 已经有缩略图或已经在排队的页面不会重复请求。列表还没有布局时以选中项为中心。
+     */
+    private void prefetchAroundVisible() {
+        int size = slideModel.getSize();
+        if (size == 0) {
+            return;
+        }
+        int first = getFirstVisibleIndex();
+        int last = getLastVisibleIndex();
+        if (first < 0) {
+            first = Math.max(0, getSelectedIndex());
+            last = first + getVisibleRowCount() - 1;
+        }
+        int from = Math.max(0, first - PREFETCH_MARGIN);
+        int to = Math.min(size - 1, last + PREFETCH_MARGIN);
+        for (int i = from; i <= to; i++) {
+            ThumbnailCache.getInstance().prefetch(slideModel.getElementAt(i),
+                SlideThumbnail.getThumbWidth(), SlideThumbnail.getThumbHeight());
+        }
+    }
+
+    // 只重绘可见范围内显示该页面的格子
+    private void repaintSlide(Slide slide) {
+        int first = getFirstVisibleIndex();
+        int last = getLastVisibleIndex();
+        if (first < 0) {
+            return;
+        }
+        for (int i = first; i <= last; i++) {
+            if (slideModel.getElementAt(i) == slide) {
+                Rectangle cell = getCellBounds(i, i);
+                if (cell != null) {
+                    repaint(cell);
+                }
+            }
+        }
+    }
+
+    /**
+     * 列表的数据模型：一个页面列表的副本，支持一次替换一段并只发出一对区间事件。
+     */
+    private static final class SlideListModel extends AbstractListModel<Slide> {
+        private final List<Slide> slides = new ArrayList<>();
+
+        @Override
+        public int getSize() {
+            return slides.size();
+        }
+
+        @Override
+        public Slide getElementAt(int index) {
+            return slides.get(index);
+        }
+
+        // 把 [from, to) 替换为 replacement
+        void replace(int from, int to, List<Slide> replacement) {
+            if (to > from) {
+                slides.subList(from, to).clear();
+                fireIntervalRemoved(this, from, to - 1);
+            }
+            if (!replacement.isEmpty()) {
+                slides.addAll(from, replacement);
+                fireIntervalAdded(this, from, from + replacement.size() - 1);
+            }
+        }
+    }
+
+    /**
+     * 用同一个 SlideThumbnail 绘制所有格子，页码取自格子的下标。
+     */
+    private static final class ThumbnailRenderer implements ListCellRenderer<Slide> {
+        private final SlideThumbnail stamp;
+
+        ThumbnailRenderer(SlideThumbnail stamp) {
+            this.stamp = stamp;
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Slide> list, Slide slide, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            stamp.setSlide(slide, index + 1);
+            stamp.setSelected(isSelected);
+            return stamp;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.myppt.view.render;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+
+import com.myppt.model.AbstractSlideObject;
+import com.myppt.model.EllipseShape;
+import com.myppt.model.ImageBlob;
+import com.myppt.model.ImageObject;
+import com.myppt.model.LineShape;
+import com.myppt.model.RectangleShape;
+import com.myppt.model.StrokeCache;
+import com.myppt.model.TextBox;
+
+/**
+ * 一个页面对象编译后的绘制指令：形状、笔触、颜色、排好的文字行、图片引用都已经准备好，
+ * 重放时直接交给 RenderBackend，不再访问对象本身。
+ * <p>
+ * 条目是不可变的，并记下编译时对象的状态；{@link #isCurrent()} 与对象的当前状态比较，
+ * 对象被修改（移动、缩放、改样式、改文字等）后返回 false，由 DisplayList 只重新编译这一个对象。
+ * 因为不可变，条目也可以交给后台线程重放（编辑区的分块渲染）。
+ */
+public abstract class DisplayItem {
+    final AbstractSlideObject source;
+    // 编译时对象的绘制区域（含描边和选中框的余量），后台线程据此筛选需要重放的条目
+    private final Rectangle paintBounds;
+
+    private DisplayItem(AbstractSlideObject source) {
+        this.source = source;
+        this.paintBounds = source.getPaintBounds();
+    }
+
+    /**
+     * 把一个对象编译成绘制指令。
+     */
+    public static DisplayItem compile(AbstractSlideObject object) {
+        if (object instanceof RectangleShape) return new BoxItem((RectangleShape) object);
+        if (object instanceof EllipseShape) return new BoxItem((EllipseShape) object);
+        if (object instanceof LineShape) return new LineItem((LineShape) object);
+        if (object instanceof TextBox) return new TextItem((TextBox) object);
+        if (object instanceof ImageObject) return new ImageItem((ImageObject) object);
+        throw new IllegalArgumentException("未知的对象类型: " + object.getClass().getName());
+    }
+
+    /**
+     * 条目绘制时可能覆盖的区域（页面坐标）。
+     */
+    public Rectangle getPaintBounds() {
+        return new Rectangle(paintBounds);
+    }
+
+    /**
+     * 条目是否可能画到指定区域（页面坐标）内。
+     */
+    public boolean intersects(Rectangle region) {
+        return paintBounds.intersects(region);
+    }
+
+    /**
+     * 条目是否引用了这张图片（图片解码完成后，据此只重绘用到它的区域）。
+     */
+    public boolean uses(ImageBlob blob) {
+        return false;
+    }
+
+    /**
+     * 条目是否仍与对象的当前状态一致。
+     */
+    public abstract boolean isCurrent();
+
+    /**
+     * 把指令交给绘制目标执行。
+     */
+    public abstract void replay(RenderBackend backend);
+
+    // --- 矩形和椭圆: 填充 + 可选的边框 ---
+    private static final class BoxItem extends DisplayItem {
+        final int x, y, width, height;
+        final Color fill;
+        final Color borderColor;
+        final double borderWidth;
+        final int borderStyle;
+        final Shape shape;
+        final BasicStroke stroke;
+
+        BoxItem(RectangleShape rect) {
+            this(rect, rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight(), rect.getFillColor(),
+                rect.getBorderColor(), rect.getBorderWidth(), rect.getBorderStyle(),
+                new Rectangle(rect.getX(), rect.getY(), rect.getWidth(), rect.getHeight()));
+        }
+
+        BoxItem(EllipseShape ellipse) {
+            this(ellipse, ellipse.getX(), ellipse.getY(), ellipse.getWidth(), ellipse.getHeight(), ellipse.getFillColor(),
+                ellipse.getBorderColor(), ellipse.getBorderWidth(), ellipse.getBorderStyle(),
+                new Ellipse2D.Float(ellipse.getX(), ellipse.getY(), ellipse.getWidth(), ellipse.getHeight()));
+        }
+
+        private BoxItem(AbstractSlideObject source, int x, int y, int width, int height, Color fill,
+                        Color borderColor, double borderWidth, int borderStyle, Shape shape) {
+            super(source);
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.fill = fill;
+            this.borderColor = borderColor;
+            this.borderWidth = borderWidth;
+            this.borderStyle = borderStyle;
+            this.shape = shape;
+            this.stroke = borderWidth > 0 ? StrokeCache.border((float) borderWidth, borderStyle) : null;
+        }
+
+        @Override
+        public boolean isCurrent() {
+            if (source instanceof RectangleShape) {
+                RectangleShape r = (RectangleShape) source;
+                return matches(r.getX(), r.getY(), r.getWidth(), r.getHeight(), r.getFillColor(),
+                    r.getBorderColor(), r.getBorderWidth(), r.getBorderStyle());
+            }
+            EllipseShape e = (EllipseShape) source;
+            return matches(e.getX(), e.getY(), e.getWidth(), e.getHeight(), e.getFillColor(),
+                e.getBorderColor(), e.getBorderWidth(), e.getBorderStyle());
+        }
+
+        private boolean matches(int x, int y, int width, int height, Color fill,
+                                Color borderColor, double borderWidth, int borderStyle) {
+            return this.x == x && this.y == y && this.width == width && this.height == height
+                && this.fill == fill && this.borderColor == borderColor
+                && this.borderWidth == borderWidth && this.borderStyle == borderStyle;
+        }
+
+        @Override
+        public void replay(RenderBackend backend) {
+            if (fill != null) {
+                backend.fillShape(shape, fill);
+            }
+            if (stroke != null) { // 只有当边框宽度大于0时才绘制
+                backend.strokeShape(shape, stroke, borderColor);
+            }
+        }
+    }
+
+    // --- 直线 ---
+    private static final class LineItem extends DisplayItem {
+        final int x1, y1, x2, y2;
+        final Color color;
+        final float strokeWidth;
+        final int borderStyle;
+        final Shape shape;
+        final BasicStroke stroke;
+
+        LineItem(LineShape line) {
+            super(line);
+            this.x1 = line.getX();
+            this.y1 = line.getY();
+            this.x2 = line.x2;
+            this.y2 = line.y2;
+            this.color = line.getLineColor();
+            this.strokeWidth = line.getStrokeWidth();
+            this.borderStyle = line.getBorderStyle();
+            this.shape = new Line2D.Float(x1, y1, x2, y2);
+            this.stroke = StrokeCache.border(strokeWidth, borderStyle);
+        }
+
+        @Override
+        public boolean isCurrent() {
+            LineShape line = (LineShape) source;
+            return x1 == line.getX() && y1 == line.getY() && x2 == line.x2 && y2 == line.y2
+                && color == line.getLineColor() && strokeWidth == line.getStrokeWidth()
+                && borderStyle == line.getBorderStyle();
+        }
+
+        @Override
+        public void replay(RenderBackend backend) {
+            backend.strokeShape(shape, stroke, color);
+        }
+    }
+
+    // --- 文本框: 换行结果来自 TextBox 的排版缓存 ---
+    private static final class TextItem extends DisplayItem {
+        final String text;
+        final Font font;
+        final Color color;
+        final int x, y, width;
+        final String[] lines;
+        final int lineHeight;
+        final int ascent;
+
+        TextItem(TextBox textBox) {
+            super(textBox);
+            this.text = textBox.getText();
+            this.font = textBox.getFont();
+            this.color = textBox.getTextColor();
+            this.x = textBox.getX();
+            this.y = textBox.getY();
+            this.width = textBox.getWidth();
+            this.lines = textBox.getWrappedLines().toArray(new String[0]);
+            this.lineHeight = textBox.getLineHeight();
+            this.ascent = textBox.getAscent();
+        }
+
+        @Override
+        public boolean isCurrent() {
+            TextBox textBox = (TextBox) source;
+            return text == textBox.getText() && font == textBox.getFont() && color == textBox.getTextColor()
+                && x == textBox.getX() && y == textBox.getY() && width == textBox.getWidth();
+        }
+
+        @Override
+        public void replay(RenderBackend backend) {
+            backend.drawTextLines(lines, font, color, x, y, lineHeight, ascent);
+        }
+    }
+
+    // --- 图片: 只引用共享的图片条目，像素在重放时按需解码 ---
+    private static final class ImageItem extends DisplayItem {
+        final ImageBlob blob;
+        final Rectangle bounds;
+        final float opacity;
+
+        ImageItem(ImageObject image) {
+            super(image);
+            this.blob = image.getBlob();
+            this.bounds = image.getBounds();
+            this.opacity = image.getOpacity();
+        }
+
+        @Override
+        public boolean isCurrent() {
+            ImageObject image = (ImageObject) source;
+            return blob == image.getBlob() && opacity == image.getOpacity()
+                && bounds.x == image.getX() && bounds.y == image.getY()
+                && bounds.width == image.getWidth() && bounds.height == image.getHeight();
+        }
+
+        @Override
+        public boolean uses(ImageBlob blob) {
+            return this.blob == blob;
+        }
+
+        @Override
+        public void replay(RenderBackend backend) {
+            backend.drawImage(blob, bounds, opacity);
+        }
+    }
+}
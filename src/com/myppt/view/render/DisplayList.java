@@ -0,0 +1,136 @@
+package com.myppt.view.render;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.myppt.model.AbstractSlideObject;
+import com.myppt.model.Slide;
+
+/**
+ * 一页幻灯片编译后的显示列表：按图层顺序排列的 DisplayItem。
+ * <p>
+ * 编辑器中的页面通过 {@link #of(Slide)} 取得，列表按页缓存并增量更新：
+ * 每次取用时逐个检查条目是否仍与对象一致，只重新编译被修改过的对象；
+ * 对象增删或换层时重排列表，未变化的对象继续使用原来的条目（例如已经排好的文字）。
+ * 画布、缩略图、放映和 PDF 导出都通过 {@link #replay} 把同一份列表交给各自的 RenderBackend。
+ * <p>
+ * {@link #of(Slide)} 只在事件分发线程上调用；后台线程（缩略图、导出）用 {@link #compile(List)} 编译自己的列表。
+ */
+public final class DisplayList {
+    // 编辑器中各页的显示列表，页面被删除并回收后自动释放
+    private static final Map<Slide, DisplayList> cache = new WeakHashMap<>();
+
+    private AbstractSlideObject[] objects = new AbstractSlideObject[0];
+    private DisplayItem[] items = new DisplayItem[0];
+    private Map<AbstractSlideObject, Integer> indexOf = new IdentityHashMap<>();
+
+    private DisplayList() {
+    }
+
+    /**
+     * 取得页面最新的显示列表（事件分发线程）。
+     */
+    public static DisplayList of(Slide slide) {
+        DisplayList list = cache.get(slide);
+        if (list == null) {
+            list = new DisplayList();
+            cache.put(slide, list);
+        }
+        list.update(slide.getSlideObjects());
+        return list;
+    }
+
+    /**
+     * 为一组对象编译一份独立的显示列表，不进入缓存。
+     */
+    public static DisplayList compile(List<AbstractSlideObject> objects) {
+        DisplayList list = new DisplayList();
+        list.update(objects);
+        return list;
+    }
+
+    private void update(List<AbstractSlideObject> current) {
+        if (!sameOrder(current)) {
+            // 对象增删或换层：按新的顺序重排，未修改的对象沿用原来的条目
+            AbstractSlideObject[] newObjects = current.toArray(new AbstractSlideObject[0]);
+            DisplayItem[] newItems = new DisplayItem[newObjects.length];
+            Map<AbstractSlideObject, Integer> newIndexOf = new IdentityHashMap<>(newObjects.length * 2);
+            for (int i = 0; i < newObjects.length; i++) {
+                Integer old = indexOf.get(newObjects[i]);
+                DisplayItem item = old != null ? items[old] : null;
+                newItems[i] = item != null && item.isCurrent() ? item : DisplayItem.compile(newObjects[i]);
+                newIndexOf.put(newObjects[i], i);
+            }
+            objects = newObjects;
+            items = newItems;
+            indexOf = newIndexOf;
+            return;
+        }
+        for (int i = 0; i < items.length; i++) {
+            if (!items[i].isCurrent()) {
+                items[i] = DisplayItem.compile(objects[i]);
+            }
+        }
+    }
+
+    private boolean sameOrder(List<AbstractSlideObject> current) {
+        if (current.size() != objects.length) {
+            return false;
+        }
+        for (int i = 0; i < objects.length; i++) {
+            if (current.get(i) != objects[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按图层顺序重放整个列表。
+     */
+    public void replay(RenderBackend backend) {
+        for (DisplayItem item : items) {
+            item.replay(backend);
+        }
+    }
+
+    /**
+     * 只重放其中一部分对象（例如与重绘区域相交的对象），visible 应按图层顺序排列。
+     */
+    public void replay(RenderBackend backend, List<AbstractSlideObject> visible) {
+        replay(backend, visible, 0, items.length);
+    }
+
+    /**
+     * 只重放 visible 中图层位置在 [from, to) 之间的对象。
+     */
+    public void replay(RenderBackend backend, List<AbstractSlideObject> visible, int from, int to) {
+        for (AbstractSlideObject object : visible) {
+            Integer index = indexOf.get(object);
+            if (index != null && index >= from && index < to) {
+                items[index].replay(backend);
+            }
+        }
+    }
+
+    /**
+     * 对象在列表中的图层位置，不在列表中时返回 -1。
+     */
+    public int indexOf(AbstractSlideObject object) {
+        Integer index = indexOf.get(object);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * 第 index 个条目。对象没有变化时两次取到的是同一个条目，可以按引用比较内容是否改变。
+     */
+    public DisplayItem get(int index) {
+        return items[index];
+    }
+
+    public int size() {
+        return items.length;
+    }
+}
@@ -0,0 +1,101 @@
+package com.myppt.view.render;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.util.Map;
+
+import com.myppt.model.ImageBlob;
+import com.myppt.model.StrokeCache;
+
+/**
+ * 在 Graphics2D 上重放显示列表（画布、缩略图、放映）。
+ * 每条指令只设置自己需要的颜色、笔触、字体和合成规则；调用者负责在重放前后保存和恢复 Graphics2D 的状态。
+ */
+public final class Graphics2DBackend implements RenderBackend {
+    private final Graphics2D g2d;
+    private final Map<ImageBlob, Image> images;
+
+    public Graphics2DBackend(Graphics2D g2d) {
+        this(g2d, null);
+    }
+
+    /**
+     * @param images 预先为这次绘制解码好的图片（例如缩略图用的小尺寸解码结果）。
+     *               不为 null 时只从这里取图片，不访问全局的解码缓存，也不触发后台解码；缺少的图片画失败提示
+     */
+    public Graphics2DBackend(Graphics2D g2d, Map<ImageBlob, Image> images) {
+        this.g2d = g2d;
+        this.images = images;
+    }
+
+    @Override
+    public void fillShape(Shape shape, Color color) {
+        g2d.setColor(color);
+        if (shape instanceof Rectangle) {
+            Rectangle r = (Rectangle) shape;
+            g2d.fillRect(r.x, r.y, r.width, r.height);
+        } else {
+            g2d.fill(shape);
+        }
+    }
+
+    @Override
+    public void strokeShape(Shape shape, BasicStroke stroke, Color color) {
+        g2d.setColor(color);
+        g2d.setStroke(stroke);
+        g2d.draw(shape);
+    }
+
+    @Override
+    public void drawTextLines(String[] lines, Font font, Color color, int x, int y, int lineHeight, int ascent) {
+        g2d.setFont(font);
+        g2d.setColor(color);
+        int currentY = y;
+        for (String line : lines) {
+            g2d.drawString(line, x, currentY + ascent);
+            currentY += lineHeight;
+        }
+    }
+
+    @Override
+    public void drawImage(ImageBlob blob, Rectangle bounds, float opacity) {
+        // 按图片在设备上实际占用的像素数（含画布缩放和高分屏缩放）选择合适的一级缩小版本
+        AffineTransform transform = g2d.getTransform();
+        double deviceScaleX = Math.hypot(transform.getScaleX(), transform.getShearY());
+        double deviceScaleY = Math.hypot(transform.getShearX(), transform.getScaleY());
+        double targetWidth = bounds.width * deviceScaleX;
+        double targetHeight = bounds.height * deviceScaleY;
+        Image image = images != null ? images.get(blob) : blob.getDecodedImage(targetWidth, targetHeight);
+        // 图片还没有解码（或已被缓存淘汰）时交给后台解码并先画占位框（尺寸已知），解码完成后会触发重绘；
+        // 解码失败 (image 为 null) 时画失败提示
+        if (image == null) {
+            boolean failed = images != null || blob.isFailed();
+            if (!failed) {
+                blob.decodeLater();
+            }
+            g2d.setColor(Color.LIGHT_GRAY);
+            g2d.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+            g2d.setColor(failed ? Color.RED : Color.DARK_GRAY);
+            g2d.drawString(failed ? "图片加载失败" : "图片加载中…", bounds.x + 10, bounds.y + bounds.height / 2);
+            return;
+        }
+
+        // 缓存被缩减过，只剩较小的几级：先拉伸较小的一级顶替，后台重新解码出清晰的版本
+        if (images == null && image.getWidth(null) < targetWidth && blob.isDegraded()) {
+            blob.decodeLater();
+        }
+
+        // 应用透明度（共享的合成规则实例），画完恢复
+        Composite originalComposite = g2d.getComposite();
+        g2d.setComposite(StrokeCache.opacity(opacity));
+        g2d.drawImage(image, bounds.x, bounds.y, bounds.width, bounds.height, null);
+        g2d.setComposite(originalComposite);
+    }
+}
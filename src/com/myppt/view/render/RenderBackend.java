@@ -0,0 +1,40 @@
+package com.myppt.view.render;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Rectangle;
+import java.awt.Shape;
+
+import com.myppt.model.ImageBlob;
+
+/**
+ * 显示列表的绘制目标。画布、缩略图和放映用 {@link Graphics2DBackend}，PDF 导出用 PdfExporter 中的实现。
+ * 所有坐标都是页面坐标（左上角为原点，y 向下）。
+ */
+public interface RenderBackend {
+
+    /**
+     * 用纯色填充一个形状。
+     */
+    void fillShape(Shape shape, Color color);
+
+    /**
+     * 用指定的笔触（线宽、虚线）描出形状的轮廓。
+     */
+    void strokeShape(Shape shape, BasicStroke stroke, Color color);
+
+    /**
+     * 绘制已经排好的多行文字。
+     * @param x 文本框左边
+     * @param y 文本框上边
+     * @param lineHeight 行距
+     * @param ascent 从行顶到基线的距离
+     */
+    void drawTextLines(String[] lines, Font font, Color color, int x, int y, int lineHeight, int ascent);
+
+    /**
+     * 在 bounds 中按不透明度绘制一张图片。
+     */
+    void drawImage(ImageBlob blob, Rectangle bounds, float opacity);
+}